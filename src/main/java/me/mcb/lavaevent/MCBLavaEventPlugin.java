@@ -2,18 +2,36 @@ package me.mcb.lavaevent;
 
 import me.mcb.lavaevent.commands.LavaEventCommand;
 import me.mcb.lavaevent.config.ConfigManager;
+import me.mcb.lavaevent.config.ConfigWatcher;
+import me.mcb.lavaevent.game.ArenaManager;
 import me.mcb.lavaevent.game.GameManager;
+import me.mcb.lavaevent.listeners.ArenaListener;
 import me.mcb.lavaevent.listeners.PlayerListener;
+import me.mcb.lavaevent.listeners.StaticLavaListener;
 import me.mcb.lavaevent.placeholders.LavaEventPlaceholders;
+import me.mcb.lavaevent.randomevents.LightningStormEvent;
+import me.mcb.lavaevent.randomevents.MobSpawnEvent;
+import me.mcb.lavaevent.randomevents.RandomEventRegistry;
+import me.mcb.lavaevent.randomevents.TntRainEvent;
 import me.mcb.lavaevent.utils.MessageUtils;
+import me.mcb.lavaevent.utils.TaskScheduler;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class MCBLavaEventPlugin extends JavaPlugin {
     
     private static MCBLavaEventPlugin instance;
     private ConfigManager configManager;
-    private GameManager gameManager;
+    private ConfigWatcher configWatcher;
+    private ArenaManager arenaManager;
     private MessageUtils messageUtils;
+    private TaskScheduler taskScheduler;
+    private ExecutorService workerPool;
+    private LavaEventPlaceholders placeholders;
+    private RandomEventRegistry randomEventRegistry;
     
     @Override
     public void onEnable() {
@@ -23,21 +41,45 @@ public class MCBLavaEventPlugin extends JavaPlugin {
         configManager = new ConfigManager(this);
         configManager.loadConfigs();
         
+        // Initialize worker pool for off-thread arena work
+        workerPool = createWorkerPool(configManager.getWorkerThreads());
+        
         // Initialize message utils
         messageUtils = new MessageUtils(this);
         
-        // Initialize game manager
-        gameManager = new GameManager(this);
+        // Initialize the scheduler, which places work on the right region thread when running on Folia
+        taskScheduler = new TaskScheduler(this);
+        if (TaskScheduler.isFolia()) {
+            getLogger().info("Folia detected, using region schedulers");
+        }
+        
+        // Register the built-in random events; other plugins can add their own to the registry
+        randomEventRegistry = new RandomEventRegistry();
+        randomEventRegistry.register(new TntRainEvent());
+        randomEventRegistry.register(new MobSpawnEvent());
+        randomEventRegistry.register(new LightningStormEvent());
+        
+        // Initialize arenas
+        arenaManager = new ArenaManager(this);
+        arenaManager.load();
+        
+        // Reload config edits by themselves if enabled
+        configWatcher = new ConfigWatcher(this);
+        configWatcher.setEnabled(configManager.getSnapshot().reload().watchFiles());
         
         // Register commands
         getCommand("lavaevent").setExecutor(new LavaEventCommand(this));
         
         // Register listeners
         getServer().getPluginManager().registerEvents(new PlayerListener(this), this);
+        getServer().getPluginManager().registerEvents(new ArenaListener(this), this);
+        getServer().getPluginManager().registerEvents(new StaticLavaListener(this), this);
         
         // Register PlaceholderAPI expansion if available
         if (getServer().getPluginManager().getPlugin("PlaceholderAPI") != null) {
-            new LavaEventPlaceholders(this).register();
+            placeholders = new LavaEventPlaceholders(this);
+            placeholders.register();
+            placeholders.start();
             getLogger().info("PlaceholderAPI integration enabled!");
         }
         
@@ -46,12 +88,43 @@ public class MCBLavaEventPlugin extends JavaPlugin {
     
     @Override
     public void onDisable() {
-        if (gameManager != null && gameManager.isEventActive()) {
-            gameManager.stopEvent();
+        if (configWatcher != null) {
+            configWatcher.setEnabled(false);
+        }
+        if (configManager != null) {
+            configManager.shutdown();
+        }
+        if (placeholders != null) {
+            placeholders.stop();
+        }
+        if (arenaManager != null) {
+            arenaManager.stopAll();
+        }
+        if (workerPool != null) {
+            workerPool.shutdownNow();
         }
         getLogger().info("MCBLavaEvent has been disabled!");
     }
     
+    private ExecutorService createWorkerPool(int threads) {
+        if (threads <= 0) {
+            threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        }
+        
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "MCBLavaEvent-Worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    // Runs on the global region once a reload has swapped in new settings
+    public void applyReloadedConfig() {
+        arenaManager.reload();
+        configWatcher.setEnabled(configManager.getSnapshot().reload().watchFiles());
+    }
+    
     public static MCBLavaEventPlugin getInstance() {
         return instance;
     }
@@ -60,11 +133,28 @@ public class MCBLavaEventPlugin extends JavaPlugin {
         return configManager;
     }
     
+    public ArenaManager getArenaManager() {
+        return arenaManager;
+    }
+    
+    // The default arena, for code that does not deal with a specific arena
     public GameManager getGameManager() {
-        return gameManager;
+        return arenaManager.getDefaultArena();
     }
     
     public MessageUtils getMessageUtils() {
         return messageUtils;
     }
+    
+    public TaskScheduler getTaskScheduler() {
+        return taskScheduler;
+    }
+    
+    public RandomEventRegistry getRandomEventRegistry() {
+        return randomEventRegistry;
+    }
+    
+    public ExecutorService getWorkerPool() {
+        return workerPool;
+    }
 } 
\ No newline at end of file
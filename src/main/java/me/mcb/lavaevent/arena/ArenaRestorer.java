@@ -0,0 +1,162 @@
+package me.mcb.lavaevent.arena;
+
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import me.mcb.lavaevent.MCBLavaEventPlugin;
+import me.mcb.lavaevent.lava.BlockWriteBackend;
+import me.mcb.lavaevent.utils.TaskScheduler;
+import net.kyori.adventure.audience.Audience;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import org.bukkit.World;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ArenaRestorer {
+    
+    // On Folia sections are restored by the regions owning them; this caps how many are handed out at once
+    private static final int MAX_SECTIONS_IN_FLIGHT = 16;
+    
+    // One section holds at most 4096 positions, so each thread reuses one buffer for every section
+    private static final ThreadLocal<long[]> POSITIONS = ThreadLocal.withInitial(() -> new long[4096]);
+    
+    private final MCBLavaEventPlugin plugin;
+    private final ChangeJournal journal;
+    private final BlockWriteBackend backend;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    
+    private ScheduledTask task;
+    private int nextSection;
+    private final LongAdder restored = new LongAdder();
+    private long startNanos;
+    private long restoreNanos;
+    private int ticks;
+    
+    public ArenaRestorer(MCBLavaEventPlugin plugin, ChangeJournal journal, BlockWriteBackend backend) {
+        this.plugin = plugin;
+        this.journal = journal;
+        this.backend = backend;
+        this.nextSection = journal.getSectionCount() - 1;
+    }
+    
+    // Puts back every journaled block, newest section first, spending at most the restore budget per tick
+    public void start(Audience requester) {
+        startNanos = System.nanoTime();
+        
+        task = plugin.getTaskScheduler().runTimer(scheduled -> {
+            ticks++;
+            if (TaskScheduler.isFolia()) {
+                dispatchSections();
+            } else {
+                long deadline = System.nanoTime() + (long) (plugin.getConfigManager().getRestoreTickBudgetMs() * 1_000_000L);
+                while (nextSection >= 0 && System.nanoTime() < deadline) {
+                    restoreSection(journal.getSection(nextSection--));
+                }
+                backend.flush();
+            }
+            
+            if (nextSection < 0 && inFlight.get() == 0) {
+                restoreNanos = System.nanoTime() - startNanos;
+                scheduled.cancel();
+                task = null;
+                journal.clear();
+                report(requester);
+            }
+        }, 1L, 1L);
+    }
+    
+    private void dispatchSections() {
+        World world = journal.getWorld();
+        while (nextSection >= 0 && inFlight.get() < MAX_SECTIONS_IN_FLIGHT) {
+            ChangeJournal.Section section = journal.getSection(nextSection--);
+            inFlight.incrementAndGet();
+            plugin.getTaskScheduler().runAt(world, section.sx, section.sz, () -> {
+                try {
+                    restoreSection(section);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            });
+        }
+    }
+    
+    // Puts back everything still journaled on the calling thread, for when the plugin is being disabled and no more
+    // ticks will come. The caller must own the arena's chunks, which on Paper the main thread always does.
+    public void restoreNow() {
+        cancel();
+        if (startNanos == 0) {
+            startNanos = System.nanoTime();
+        }
+        while (nextSection >= 0) {
+            restoreSection(journal.getSection(nextSection--));
+        }
+        backend.flush();
+        restoreNanos = System.nanoTime() - startNanos;
+        journal.clear();
+        report(null);
+    }
+    
+    public void cancel() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+    
+    // Writes the section one palette entry at a time, top layer first so nothing above is left unsupported
+    private void restoreSection(ChangeJournal.Section section) {
+        World world = journal.getWorld();
+        long[] positions = POSITIONS.get();
+        for (int local = 0; local < section.getPaletteSize(); local++) {
+            int count = 0;
+            for (int w = section.changed.length - 1; w >= 0; w--) {
+                long word = section.changed[w];
+                while (word != 0) {
+                    int bit = (w << 6) | (63 - Long.numberOfLeadingZeros(word));
+                    word &= ~(1L << bit);
+                    if (section.get(bit) != local) {
+                        continue;
+                    }
+                    int x = (section.sx << 4) | (bit & 15);
+                    int y = (section.sy << 4) | (bit >> 8);
+                    int z = (section.sz << 4) | ((bit >> 4) & 15);
+                    positions[count++] = BlockWriteBackend.pack(x, y, z);
+                }
+            }
+            if (count > 0) {
+                restored.add(backend.write(world, positions, count, journal.getState(section.getStateId(local)), false));
+            }
+        }
+    }
+    
+    private void report(Audience requester) {
+        String summary = "Arena restored: " + restored.sum() + " blocks in " + (restoreNanos / 1_000_000) + " ms over "
+            + ticks + " ticks (" + getBlocksPerSecond() + " blocks/s)";
+        plugin.getLogger().info(summary);
+        if (requester != null) {
+            requester.sendMessage(Component.text(summary, NamedTextColor.GREEN));
+        }
+    }
+    
+    public boolean isRunning() {
+        return task != null;
+    }
+    
+    public int getPercent() {
+        int total = journal.getSectionCount();
+        return total == 0 ? 100 : (int) ((total - 1 - nextSection) * 100L / total);
+    }
+    
+    public long getRestored() {
+        return restored.sum();
+    }
+    
+    public long getBlocksPerSecond() {
+        long nanos = task != null ? System.nanoTime() - startNanos : restoreNanos;
+        return nanos == 0 ? 0 : restored.sum() * 1_000_000_000L / nanos;
+    }
+    
+    public long getRestoreNanos() {
+        return restoreNanos;
+    }
+}
@@ -0,0 +1,61 @@
+package me.mcb.lavaevent.arena;
+
+// Where one arena is played. The default arena comes from game.*, extra arenas from arenas.<id>.*
+public class ArenaSettings {
+    
+    public static final String DEFAULT_ID = "default";
+    
+    private final String id;
+    private final String worldName;
+    private final int centerX;
+    private final int centerZ;
+    private final int startingSize;
+    private final int finalSize;
+    private final String templateWorld;
+    private final boolean sharedWorld;
+    
+    public ArenaSettings(String id, String worldName, int centerX, int centerZ, int startingSize, int finalSize,
+                         String templateWorld, boolean sharedWorld) {
+        this.id = id;
+        this.worldName = worldName;
+        this.centerX = centerX;
+        this.centerZ = centerZ;
+        this.startingSize = startingSize;
+        this.finalSize = finalSize;
+        this.templateWorld = templateWorld;
+        this.sharedWorld = sharedWorld;
+    }
+    
+    public String getId() {
+        return id;
+    }
+    
+    public String getWorldName() {
+        return worldName;
+    }
+    
+    public int getCenterX() {
+        return centerX;
+    }
+    
+    public int getCenterZ() {
+        return centerZ;
+    }
+    
+    public int getStartingSize() {
+        return startingSize;
+    }
+    
+    public int getFinalSize() {
+        return finalSize;
+    }
+    
+    public String getTemplateWorld() {
+        return templateWorld;
+    }
+    
+    // True when another arena uses the same world, so the world border and the world itself cannot be owned by this arena
+    public boolean isSharedWorld() {
+        return sharedWorld;
+    }
+}
@@ -0,0 +1,129 @@
+package me.mcb.lavaevent.arena;
+
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import me.mcb.lavaevent.MCBLavaEventPlugin;
+import org.bukkit.World;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ArenaWarmup {
+    
+    private final MCBLavaEventPlugin plugin;
+    private final World world;
+    private final int minChunkX;
+    private final int minChunkZ;
+    private final int depth;
+    private final int totalChunks;
+    
+    // Paper completes chunk futures on the main thread, Folia on the thread of the region owning the chunk
+    private int nextIndex;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger loadedChunks = new AtomicInteger();
+    private final AtomicInteger failedChunks = new AtomicInteger();
+    private volatile int lastReportedPercent;
+    private volatile boolean cancelled = false;
+    private long startNanos;
+    private volatile long warmupNanos;
+    
+    private ScheduledTask task;
+    
+    public ArenaWarmup(MCBLavaEventPlugin plugin, World world, int minX, int minZ, int maxX, int maxZ) {
+        this.plugin = plugin;
+        this.world = world;
+        this.minChunkX = minX >> 4;
+        this.minChunkZ = minZ >> 4;
+        this.depth = (maxZ >> 4) - minChunkZ + 1;
+        this.totalChunks = ((maxX >> 4) - minChunkX + 1) * depth;
+    }
+    
+    // Loads or generates every arena chunk through Paper's async chunk API and pins it with a plugin ticket
+    public void start() {
+        int maxInFlight = Math.max(1, plugin.getConfigManager().getWarmupMaxChunksInFlight());
+        startNanos = System.nanoTime();
+        
+        task = plugin.getTaskScheduler().runTimer(scheduled -> {
+            while (inFlight.get() < maxInFlight && nextIndex < totalChunks) {
+                request(nextIndex++);
+            }
+            
+            if (nextIndex >= totalChunks) {
+                scheduled.cancel();
+                task = null;
+            }
+        }, 1L, 1L);
+    }
+    
+    private void request(int index) {
+        int cx = minChunkX + index / depth;
+        int cz = minChunkZ + index % depth;
+        inFlight.incrementAndGet();
+        
+        world.getChunkAtAsync(cx, cz, true).whenComplete((chunk, error) -> {
+            inFlight.decrementAndGet();
+            if (cancelled) {
+                return;
+            }
+            
+            if (error != null || chunk == null) {
+                failedChunks.incrementAndGet();
+            } else {
+                chunk.addPluginChunkTicket(plugin);
+                loadedChunks.incrementAndGet();
+            }
+            reportProgress();
+        });
+    }
+    
+    // Several region threads can report at once, so this only logs and finishes under the lock
+    private synchronized void reportProgress() {
+        int percent = getPercent();
+        if (percent / 10 > lastReportedPercent / 10 || (isComplete() && warmupNanos == 0)) {
+            lastReportedPercent = percent;
+            plugin.getLogger().info("Arena warm-up: " + loadedChunks.get() + "/" + totalChunks + " chunks loaded (" + percent + "%)");
+        }
+        
+        if (isComplete() && warmupNanos == 0) {
+            warmupNanos = System.nanoTime() - startNanos;
+            if (failedChunks.get() > 0) {
+                plugin.getLogger().warning("Arena warm-up could not load " + failedChunks.get() + " chunks");
+            }
+        }
+    }
+    
+    // Stops loading and lets every pinned chunk unload again
+    public void release() {
+        cancelled = true;
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        
+        for (int index = 0; index < nextIndex; index++) {
+            world.removePluginChunkTicket(minChunkX + index / depth, minChunkZ + index % depth, plugin);
+        }
+    }
+    
+    public boolean isComplete() {
+        return loadedChunks.get() + failedChunks.get() >= totalChunks;
+    }
+    
+    public int getPercent() {
+        return totalChunks == 0 ? 100 : (int) ((loadedChunks.get() + failedChunks.get()) * 100L / totalChunks);
+    }
+    
+    public int getLoadedChunks() {
+        return loadedChunks.get();
+    }
+    
+    public int getTotalChunks() {
+        return totalChunks;
+    }
+    
+    public int getInFlight() {
+        return inFlight.get();
+    }
+    
+    public long getWarmupNanos() {
+        return warmupNanos;
+    }
+}
@@ -0,0 +1,198 @@
+package me.mcb.lavaevent.arena;
+
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Lava writes and block events on Folia record from several region threads, so recording is synchronized
+public class ChangeJournal {
+    
+    private static final int SECTION_WORDS = 64;
+    
+    private final World world;
+    
+    // Every distinct original state gets one id; sections store small local indexes into their own palette of ids
+    private final List<BlockData> states = new ArrayList<>();
+    private final Map<BlockData, Integer> stateIds = new HashMap<>();
+    
+    // Sections in the order they were first touched, so a restore can walk them backwards
+    private final Map<Long, Section> sectionsByKey = new HashMap<>();
+    private final List<Section> sections = new ArrayList<>();
+    private long recorded;
+    private long memoryBytes;
+    
+    public ChangeJournal(World world) {
+        this.world = world;
+    }
+    
+    // Remembers the state of (x, y, z) before its first change; later changes to the same block are ignored
+    public synchronized void record(int x, int y, int z, BlockData original) {
+        Section section = section(x >> 4, y >> 4, z >> 4);
+        int bit = ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+        long mask = 1L << bit;
+        if ((section.changed[bit >>> 6] & mask) != 0) {
+            return;
+        }
+        
+        memoryBytes -= section.memoryBytes();
+        section.changed[bit >>> 6] |= mask;
+        section.set(bit, stateId(original));
+        memoryBytes += section.memoryBytes();
+        recorded++;
+    }
+    
+    public synchronized boolean isRecorded(int x, int y, int z) {
+        Section section = sectionsByKey.get(key(x >> 4, y >> 4, z >> 4));
+        int bit = ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+        return section != null && (section.changed[bit >>> 6] & (1L << bit)) != 0;
+    }
+    
+    private Section section(int sx, int sy, int sz) {
+        long key = key(sx, sy, sz);
+        Section section = sectionsByKey.get(key);
+        if (section == null) {
+            section = new Section(sx, sy, sz);
+            sectionsByKey.put(key, section);
+            sections.add(section);
+            memoryBytes += section.memoryBytes();
+        }
+        return section;
+    }
+    
+    private int stateId(BlockData data) {
+        Integer id = stateIds.get(data);
+        if (id == null) {
+            id = states.size();
+            states.add(data);
+            stateIds.put(data, id);
+        }
+        return id;
+    }
+    
+    private static long key(int sx, int sy, int sz) {
+        return ((long) (sx & 0x3FFFFFF) << 38) | ((long) (sz & 0x3FFFFFF) << 12) | (sy & 0xFFF);
+    }
+    
+    public synchronized void clear() {
+        states.clear();
+        stateIds.clear();
+        sectionsByKey.clear();
+        sections.clear();
+        recorded = 0;
+        memoryBytes = 0;
+    }
+    
+    public World getWorld() {
+        return world;
+    }
+    
+    public int getSectionCount() {
+        return sections.size();
+    }
+    
+    Section getSection(int index) {
+        return sections.get(index);
+    }
+    
+    BlockData getState(int id) {
+        return states.get(id);
+    }
+    
+    public boolean isEmpty() {
+        return recorded == 0;
+    }
+    
+    public long getRecorded() {
+        return recorded;
+    }
+    
+    // Approximate heap used by the recorded sections, not counting the shared block states
+    public long getMemoryBytes() {
+        return memoryBytes;
+    }
+    
+    // One 16x16x16 section: a bit per changed block and a paletted array of original states,
+    // packed with as few bits per block as the section's palette needs (none while it has one state)
+    static class Section {
+        final int sx;
+        final int sy;
+        final int sz;
+        final long[] changed = new long[SECTION_WORDS];
+        int[] palette = new int[1];
+        int paletteSize;
+        int bits;
+        long[] indexes;
+        
+        private Section(int sx, int sy, int sz) {
+            this.sx = sx;
+            this.sy = sy;
+            this.sz = sz;
+        }
+        
+        private void set(int bit, int stateId) {
+            int local = localIndex(stateId);
+            if (bits > 0) {
+                int offset = bit * bits;
+                long mask = (1L << bits) - 1;
+                indexes[offset >>> 6] = (indexes[offset >>> 6] & ~(mask << (offset & 63))) | ((long) local << (offset & 63));
+            }
+        }
+        
+        int get(int bit) {
+            if (bits == 0) {
+                return 0;
+            }
+            int offset = bit * bits;
+            return (int) ((indexes[offset >>> 6] >>> (offset & 63)) & ((1L << bits) - 1));
+        }
+        
+        private int localIndex(int stateId) {
+            for (int i = 0; i < paletteSize; i++) {
+                if (palette[i] == stateId) {
+                    return i;
+                }
+            }
+            
+            if (paletteSize == palette.length) {
+                int[] grown = new int[palette.length * 2];
+                System.arraycopy(palette, 0, grown, 0, paletteSize);
+                palette = grown;
+            }
+            palette[paletteSize] = stateId;
+            if (paletteSize > 0 && paletteSize >= 1 << bits) {
+                resize();
+            }
+            return paletteSize++;
+        }
+        
+        // Doubles the bits per block, keeping entries aligned inside a word
+        private void resize() {
+            int newBits = bits == 0 ? 1 : bits * 2;
+            long[] grown = new long[4096 * newBits / 64];
+            if (bits > 0) {
+                for (int bit = 0; bit < 4096; bit++) {
+                    int offset = bit * newBits;
+                    grown[offset >>> 6] |= (long) get(bit) << (offset & 63);
+                }
+            }
+            bits = newBits;
+            indexes = grown;
+        }
+        
+        int getPaletteSize() {
+            return paletteSize;
+        }
+        
+        int getStateId(int local) {
+            return palette[local];
+        }
+        
+        private long memoryBytes() {
+            return 64 + SECTION_WORDS * 8L + palette.length * 4L + (indexes != null ? indexes.length * 8L : 0);
+        }
+    }
+}
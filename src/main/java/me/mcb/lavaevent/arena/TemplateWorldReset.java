@@ -0,0 +1,199 @@
+package me.mcb.lavaevent.arena;
+
+import me.mcb.lavaevent.MCBLavaEventPlugin;
+import me.mcb.lavaevent.utils.TaskScheduler;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.WorldCreator;
+import org.bukkit.entity.Player;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class TemplateWorldReset {
+    
+    // Folders holding chunk, entity and POI data. level.dat and uid.dat stay, so the world keeps its identity.
+    private static final String[] COPIED_FOLDERS = {"region", "entities", "poi", "DIM-1", "DIM1"};
+    
+    private final MCBLavaEventPlugin plugin;
+    
+    private volatile boolean running = false;
+    private long startNanos;
+    private long lastResetNanos;
+    private long lastCopyNanos;
+    private long copiedBytes;
+    private int copiedFiles;
+    
+    public TemplateWorldReset(MCBLavaEventPlugin plugin) {
+        this.plugin = plugin;
+    }
+    
+    // Unloads worldName, replaces its chunk data with the template's on the worker pool and loads it again.
+    // Returns false when the reset could not be started.
+    public boolean start(String worldName, String templateName) {
+        if (running) {
+            return false;
+        }
+        // Folia cannot unload and load worlds while the server runs
+        if (TaskScheduler.isFolia()) {
+            plugin.getLogger().severe("Template world resets are not supported on Folia; use the change journal restore instead");
+            return false;
+        }
+        
+        Path container = Bukkit.getWorldContainer().toPath();
+        Path template = container.resolve(templateName);
+        Path target = container.resolve(worldName);
+        if (!Files.isDirectory(template)) {
+            plugin.getLogger().severe("Template world folder '" + templateName + "' not found!");
+            return false;
+        }
+        if (Bukkit.getWorld(templateName) != null) {
+            plugin.getLogger().severe("Template world '" + templateName + "' is loaded; unload it so its files can be copied safely");
+            return false;
+        }
+        
+        startNanos = System.nanoTime();
+        World world = Bukkit.getWorld(worldName);
+        if (world != null && !unload(world)) {
+            return false;
+        }
+        
+        running = true;
+        plugin.getWorkerPool().execute(() -> {
+            long copyStart = System.nanoTime();
+            boolean copied;
+            try {
+                copyTemplate(template, target);
+                copied = true;
+            } catch (IOException e) {
+                plugin.getLogger().severe("Could not copy template world '" + templateName + "': " + e.getMessage());
+                copied = false;
+            }
+            lastCopyNanos = System.nanoTime() - copyStart;
+            
+            boolean success = copied;
+            plugin.getTaskScheduler().run(() -> finish(worldName, success));
+        });
+        return true;
+    }
+    
+    private boolean unload(World world) {
+        World fallback = Bukkit.getWorlds().get(0);
+        if (fallback.equals(world)) {
+            plugin.getLogger().severe("The event world is the server's main world and cannot be reset from a template");
+            return false;
+        }
+        
+        Location spawn = fallback.getSpawnLocation();
+        for (Player player : world.getPlayers()) {
+            player.teleport(spawn);
+        }
+        
+        if (!Bukkit.unloadWorld(world, false)) {
+            plugin.getLogger().severe("Could not unload world '" + world.getName() + "' for the template reset");
+            return false;
+        }
+        return true;
+    }
+    
+    // Runs on a worker thread while the world is unloaded
+    private void copyTemplate(Path template, Path target) throws IOException {
+        copiedFiles = 0;
+        copiedBytes = 0;
+        
+        for (String folder : COPIED_FOLDERS) {
+            Path source = template.resolve(folder);
+            Path destination = target.resolve(folder);
+            
+            // Chunks generated during the match have no template counterpart, so the old folder goes entirely
+            deleteRecursively(destination);
+            if (!Files.isDirectory(source)) {
+                continue;
+            }
+            
+            List<Path> files;
+            try (Stream<Path> walk = Files.walk(source)) {
+                files = walk.toList();
+            }
+            for (Path file : files) {
+                Path copy = destination.resolve(source.relativize(file).toString());
+                if (Files.isDirectory(file)) {
+                    Files.createDirectories(copy);
+                } else {
+                    copyFile(file, copy);
+                }
+            }
+        }
+    }
+    
+    // Channel transfer lets the OS copy region files without moving them through the Java heap
+    private void copyFile(Path source, Path destination) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(destination, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                 StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+            copiedBytes += size;
+            copiedFiles++;
+        }
+    }
+    
+    private void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(path)) {
+            files = walk.sorted(Comparator.reverseOrder()).toList();
+        }
+        for (Path file : files) {
+            Files.delete(file);
+        }
+    }
+    
+    private void finish(String worldName, boolean copied) {
+        World world = new WorldCreator(worldName).createWorld();
+        running = false;
+        lastResetNanos = System.nanoTime() - startNanos;
+        
+        if (world == null) {
+            plugin.getLogger().severe("Could not load world '" + worldName + "' after the template reset");
+            return;
+        }
+        if (copied) {
+            plugin.getLogger().info("Reset '" + worldName + "' from its template in " + (lastResetNanos / 1_000_000) + " ms ("
+                + copiedFiles + " files, " + (copiedBytes / (1024 * 1024)) + " MB copied in " + (lastCopyNanos / 1_000_000) + " ms)");
+        }
+    }
+    
+    public boolean isRunning() {
+        return running;
+    }
+    
+    public long getLastResetNanos() {
+        return lastResetNanos;
+    }
+    
+    public long getLastCopyNanos() {
+        return lastCopyNanos;
+    }
+    
+    public long getCopiedBytes() {
+        return copiedBytes;
+    }
+    
+    public int getCopiedFiles() {
+        return copiedFiles;
+    }
+}
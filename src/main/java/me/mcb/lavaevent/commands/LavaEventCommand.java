@@ -1,6 +1,17 @@
 package me.mcb.lavaevent.commands;
 
 import me.mcb.lavaevent.MCBLavaEventPlugin;
+import me.mcb.lavaevent.arena.ArenaRestorer;
+import me.mcb.lavaevent.arena.ArenaSettings;
+import me.mcb.lavaevent.arena.ArenaWarmup;
+import me.mcb.lavaevent.arena.ChangeJournal;
+import me.mcb.lavaevent.arena.TemplateWorldReset;
+import me.mcb.lavaevent.game.GameManager;
+import me.mcb.lavaevent.game.GameState;
+import me.mcb.lavaevent.lava.LavaFillPlan;
+import me.mcb.lavaevent.lava.LavaLayerWriter;
+import me.mcb.lavaevent.lava.LavaPlacementScheduler;
+import me.mcb.lavaevent.lava.SkyConnectivity;
 import me.mcb.lavaevent.utils.MessageUtils;
 import org.bukkit.Bukkit;
 import org.bukkit.World;
@@ -13,8 +24,10 @@ import org.bukkit.entity.Player;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class LavaEventCommand implements CommandExecutor, TabCompleter {
     
@@ -34,11 +47,12 @@ public class LavaEventCommand implements CommandExecutor, TabCompleter {
                 Player player = (Player) sender;
                 if (args.length == 1) {
                     // Show player's own usage
-                    if (!plugin.getGameManager().isEventActive()) {
+                    GameManager arena = plugin.getArenaManager().getArenaOf(player.getUniqueId());
+                    if (arena == null || !arena.isEventActive()) {
                         messageUtils.sendMessage(sender, "commands.waterbuckets.no-event");
                         return true;
                     }
-                    showPlayerWaterBucketUsage(sender, player);
+                    showPlayerWaterBucketUsage(sender, arena, player);
                     return true;
                 }
             }
@@ -55,13 +69,20 @@ public class LavaEventCommand implements CommandExecutor, TabCompleter {
         }
         
         String subCommand = args[0].toLowerCase();
+        GameManager arena;
         
         switch (subCommand) {
             case "start":
-                handleStartCommand(sender);
+                arena = resolveArena(sender, args.length > 1 ? args[1] : null);
+                if (arena != null) {
+                    handleStartCommand(sender, arena);
+                }
                 break;
             case "stop":
-                handleStopCommand(sender);
+                arena = resolveArena(sender, args.length > 1 ? args[1] : null);
+                if (arena != null) {
+                    handleStopCommand(sender, arena);
+                }
                 break;
             case "reload":
                 handleReloadCommand(sender);
@@ -73,6 +94,21 @@ public class LavaEventCommand implements CommandExecutor, TabCompleter {
             case "wb":
                 handleWaterBucketsCommand(sender, args);
                 break;
+            case "stats":
+                arena = resolveArena(sender, args.length > 1 ? args[1] : null);
+                if (arena != null) {
+                    handleStatsCommand(sender, arena);
+                }
+                break;
+            case "restore":
+                arena = resolveArena(sender, args.length > 1 ? args[1] : null);
+                if (arena != null) {
+                    handleRestoreCommand(sender, arena);
+                }
+                break;
+            case "arenas":
+                handleArenasCommand(sender);
+                break;
             default:
                 sendHelpMessage(sender);
                 break;
@@ -81,13 +117,38 @@ public class LavaEventCommand implements CommandExecutor, TabCompleter {
         return true;
     }
     
-    private void handleStartCommand(CommandSender sender) {
-        if (plugin.getGameManager().isEventActive()) {
+    // The named arena, else the arena the sender is in, else the default arena. Null (after telling the sender) for unknown names.
+    private GameManager resolveArena(CommandSender sender, String id) {
+        if (id != null) {
+            GameManager arena = plugin.getArenaManager().getArena(id);
+            if (arena == null) {
+                Map<String, String> placeholders = MessageUtils.createPlaceholders("arena", id);
+                messageUtils.sendMessage(sender, "errors.arena-not-found", placeholders);
+            }
+            return arena;
+        }
+        
+        if (sender instanceof Player) {
+            GameManager arena = plugin.getArenaManager().getArenaFor((Player) sender);
+            if (arena != null) {
+                return arena;
+            }
+        }
+        return plugin.getArenaManager().getDefaultArena();
+    }
+    
+    private void handleStartCommand(CommandSender sender, GameManager arena) {
+        if (arena.isEventActive()) {
             messageUtils.sendMessage(sender, "commands.start.already-running");
             return;
         }
         
-        String worldName = plugin.getConfigManager().getEventWorld();
+        if (arena.isRestoring() || arena.getTemplateReset().isRunning()) {
+            messageUtils.sendMessage(sender, "commands.start.resetting");
+            return;
+        }
+        
+        String worldName = arena.getSettings().getWorldName();
         World world = Bukkit.getWorld(worldName);
         
         if (world == null) {
@@ -96,7 +157,7 @@ public class LavaEventCommand implements CommandExecutor, TabCompleter {
             return;
         }
         
-        boolean success = plugin.getGameManager().startEvent();
+        boolean success = arena.startEvent();
         if (success) {
             messageUtils.sendMessage(sender, "commands.start.success");
         } else {
@@ -104,38 +165,80 @@ public class LavaEventCommand implements CommandExecutor, TabCompleter {
         }
     }
     
-    private void handleStopCommand(CommandSender sender) {
-        if (!plugin.getGameManager().isEventActive()) {
+    private void handleStopCommand(CommandSender sender, GameManager arena) {
+        if (!arena.isEventActive()) {
             messageUtils.sendMessage(sender, "commands.stop.not-running");
             return;
         }
         
-        plugin.getGameManager().stopEvent();
+        arena.stopEvent();
         messageUtils.sendMessage(sender, "commands.stop.success");
     }
     
-    private void handleReloadCommand(CommandSender sender) {
-        try {
-            plugin.getConfigManager().reloadConfigs();
-            messageUtils.sendMessage(sender, "commands.reload-success");
-        } catch (Exception e) {
-            plugin.getLogger().severe("Error reloading configs: " + e.getMessage());
-            messageUtils.sendMessage(sender, "errors.command-error");
+    private void handleRestoreCommand(CommandSender sender, GameManager arena) {
+        if (arena.isEventActive()) {
+            messageUtils.sendMessage(sender, "commands.restore.event-running");
+            return;
         }
+        
+        if (arena.isRestoring()) {
+            messageUtils.sendMessage(sender, "commands.restore.already-running");
+            return;
+        }
+        
+        ChangeJournal journal = arena.getChangeJournal();
+        long blocks = journal != null ? journal.getRecorded() : 0;
+        if (!arena.restoreArena(sender)) {
+            messageUtils.sendMessage(sender, "commands.restore.nothing");
+            return;
+        }
+        
+        Map<String, String> placeholders = MessageUtils.createPlaceholders("blocks", String.valueOf(blocks));
+        messageUtils.sendMessage(sender, "commands.restore.started", placeholders);
+    }
+    
+    private void handleReloadCommand(CommandSender sender) {
+        applyConfig(sender, plugin.getConfigManager().reloadConfigs(), "commands.reload-success");
+    }
+    
+    // The files are read off the main thread; the reply is sent once the new settings are in place.
+    // Nothing changes unless the whole of config.yml checks out; otherwise the sender gets the list of problems.
+    private void applyConfig(CommandSender sender, CompletableFuture<List<String>> update, String successPath) {
+        update.whenComplete((errors, failure) -> {
+            if (failure != null) {
+                messageUtils.sendMessage(sender, "errors.command-error");
+                return;
+            }
+            if (!errors.isEmpty()) {
+                messageUtils.sendMessage(sender, "commands.reload-failed",
+                    MessageUtils.createPlaceholders("count", String.valueOf(errors.size())));
+                for (String error : errors) {
+                    messageUtils.sendRawMessage(sender, "commands.reload-error", MessageUtils.createPlaceholders("error", error));
+                }
+                return;
+            }
+            plugin.applyReloadedConfig();
+            messageUtils.sendMessage(sender, successPath);
+        });
     }
     
     private void handleSetupCommand(CommandSender sender, String[] args) {
-        if (args.length != 4) {
+        if (args.length != 4 && args.length != 5) {
             messageUtils.sendMessage(sender, "commands.setup.usage");
             return;
         }
         
+        GameManager arena = resolveArena(sender, args.length == 5 ? args[4] : null);
+        if (arena == null) {
+            return;
+        }
+        
         try {
             int centerX = Integer.parseInt(args[1]);
             int centerZ = Integer.parseInt(args[2]);
             int radius = Integer.parseInt(args[3]);
             
-            String worldName = plugin.getConfigManager().getEventWorld();
+            String worldName = arena.getSettings().getWorldName();
             World world = Bukkit.getWorld(worldName);
             
             if (world == null) {
@@ -144,19 +247,21 @@ public class LavaEventCommand implements CommandExecutor, TabCompleter {
                 return;
             }
             
-            // Setup world border
-            WorldBorder border = world.getWorldBorder();
-            border.setCenter(centerX, centerZ);
-            border.setSize(radius * 2);
-            
-            // Update config
-            plugin.getConfigManager().getConfig().set("game.border.center-x", centerX);
-            plugin.getConfigManager().getConfig().set("game.border.center-z", centerZ);
-            plugin.getConfigManager().getConfig().set("game.border.starting-size", radius * 2);
-            plugin.getConfigManager().saveConfig();
-            
-            messageUtils.sendMessage(sender, "commands.setup.success");
+            // Setup world border, unless the world is shared and each arena sends its own border
+            if (!arena.getSettings().isSharedWorld()) {
+                WorldBorder border = world.getWorldBorder();
+                border.setCenter(centerX, centerZ);
+                border.setSize(radius * 2);
+            }
             
+            // Update config, saved off the main thread
+            String path = arena.getId().equals(ArenaSettings.DEFAULT_ID) ? "game.border." : "arenas." + arena.getId() + ".";
+            Map<String, Object> changes = new LinkedHashMap<>();
+            changes.put(path + "center-x", centerX);
+            changes.put(path + "center-z", centerZ);
+            changes.put(path + "starting-size", radius * 2);
+            applyConfig(sender, plugin.getConfigManager().updateConfig(changes), "commands.setup.success");
+        
         } catch (NumberFormatException e) {
             Map<String, String> placeholders = MessageUtils.createPlaceholders("input", String.join(" ", args));
             messageUtils.sendMessage(sender, "errors.invalid-number", placeholders);
@@ -164,14 +269,14 @@ public class LavaEventCommand implements CommandExecutor, TabCompleter {
     }
     
     private void handleWaterBucketsCommand(CommandSender sender, String[] args) {
-        if (!plugin.getGameManager().isEventActive()) {
-            messageUtils.sendMessage(sender, "commands.waterbuckets.no-event");
-            return;
-        }
-        
         if (args.length == 1) {
             // Show overall water bucket status
-            showWaterBucketStatus(sender);
+            GameManager arena = resolveArena(sender, null);
+            if (!arena.isEventActive()) {
+                messageUtils.sendMessage(sender, "commands.waterbuckets.no-event");
+                return;
+            }
+            showWaterBucketStatus(sender, arena);
         } else if (args.length == 2) {
             // Show specific player's water bucket usage
             String playerName = args[1];
@@ -183,13 +288,18 @@ public class LavaEventCommand implements CommandExecutor, TabCompleter {
                 return;
             }
             
-            showPlayerWaterBucketUsage(sender, target);
+            GameManager arena = plugin.getArenaManager().getArenaOf(target.getUniqueId());
+            if (arena == null || !arena.isEventActive()) {
+                messageUtils.sendMessage(sender, "commands.waterbuckets.no-event");
+                return;
+            }
+            showPlayerWaterBucketUsage(sender, arena, target);
         } else {
             messageUtils.sendMessage(sender, "commands.waterbuckets.usage");
         }
     }
     
-    private void showWaterBucketStatus(CommandSender sender) {
+    private void showWaterBucketStatus(CommandSender sender, GameManager arena) {
         int maxUses = plugin.getConfigManager().getMaxWaterBucketsPerPlayer();
         boolean disabled = plugin.getConfigManager().areWaterBucketsDisabled();
         
@@ -211,13 +321,13 @@ public class LavaEventCommand implements CommandExecutor, TabCompleter {
         
         boolean hasUsage = false;
         for (Player player : Bukkit.getOnlinePlayers()) {
-            if (plugin.getGameManager().isPlayerAlive(player.getUniqueId()) || 
-                plugin.getGameManager().isPlayerSpectator(player.getUniqueId())) {
+            if (arena.isPlayerAlive(player.getUniqueId()) || 
+                arena.isPlayerSpectator(player.getUniqueId())) {
                 
-                int usage = plugin.getGameManager().getWaterBucketUsage(player.getUniqueId());
+                int usage = arena.getWaterBucketUsage(player.getUniqueId());
                 if (usage > 0 || maxUses != -1) {
                     hasUsage = true;
-                    int remaining = plugin.getGameManager().getRemainingWaterBuckets(player.getUniqueId());
+                    int remaining = arena.getRemainingWaterBuckets(player.getUniqueId());
                     String remainingText = remaining == -1 ? "∞" : String.valueOf(remaining);
                     
                     sender.sendMessage("§7- §b" + player.getName() + "§7: §f" + usage + 
@@ -232,9 +342,9 @@ public class LavaEventCommand implements CommandExecutor, TabCompleter {
         }
     }
     
-    private void showPlayerWaterBucketUsage(CommandSender sender, Player target) {
-        int usage = plugin.getGameManager().getWaterBucketUsage(target.getUniqueId());
-        int remaining = plugin.getGameManager().getRemainingWaterBuckets(target.getUniqueId());
+    private void showPlayerWaterBucketUsage(CommandSender sender, GameManager arena, Player target) {
+        int usage = arena.getWaterBucketUsage(target.getUniqueId());
+        int remaining = arena.getRemainingWaterBuckets(target.getUniqueId());
         int maxUses = plugin.getConfigManager().getMaxWaterBucketsPerPlayer();
         
         sender.sendMessage("§6§l=== " + target.getName() + "'s Water Bucket Usage ===");
@@ -257,26 +367,129 @@ public class LavaEventCommand implements CommandExecutor, TabCompleter {
         }
     }
     
+    private void handleStatsCommand(CommandSender sender, GameManager arena) {
+        LavaPlacementScheduler scheduler = arena.getLavaScheduler();
+        LavaLayerWriter writer = arena.getLavaWriter();
+        
+        sender.sendMessage("§6§l=== Lava Placement Stats (" + arena.getId() + ") ===");
+        
+        GameState state = arena.getState();
+        if (state.active()) {
+            sender.sendMessage("§7Phase: §f" + state.phase().getKey() + " §7(tick §f" + state.tick() + 
+                             "§7, §f" + state.scheduled() + " §7scheduled, loop §f" + 
+                             String.format("%.2f", state.lastLoopNanos() / 1_000_000.0) + " ms §7last, §f" + 
+                             String.format("%.2f", state.maxLoopNanos() / 1_000_000.0) + " ms §7max)");
+        }
+        
+        if (scheduler.isBehind()) {
+            sender.sendMessage("§c§lPlacement is behind the configured lava-rise-speed!");
+        }
+        
+        ArenaWarmup warmup = arena.getArenaWarmup();
+        if (warmup != null) {
+            sender.sendMessage("§7Arena warm-up: §f" + warmup.getLoadedChunks() + "§7/§f" + warmup.getTotalChunks() + 
+                             " §7chunks (§f" + warmup.getPercent() + "%§7" + 
+                             (warmup.isComplete() ? ", took §f" + (warmup.getWarmupNanos() / 1_000_000) + " ms§7)" : ", §f" + warmup.getInFlight() + " §7in flight)"));
+        }
+        
+        sender.sendMessage("§7Pending layers: §f" + scheduler.getPendingLayers());
+        sender.sendMessage("§7Pending chunks: §f" + scheduler.getPendingChunks());
+        
+        if (scheduler.getLastLayerY() != Integer.MIN_VALUE) {
+            sender.sendMessage("§7Last layer: §fY " + scheduler.getLastLayerY() + 
+                             " §7(§f" + scheduler.getLastLayerWritten() + "§7/§f" + scheduler.getLastLayerExamined() + 
+                             " §7written, §f" + String.format("%.1f", scheduler.getLastLayerNanos() / 1_000_000.0) + 
+                             " ms §7over §f" + scheduler.getLastLayerTicks() + " §7ticks)");
+        }
+        
+        LavaFillPlan plan = writer.getPlan();
+        if (plan != null) {
+            sender.sendMessage("§7Fill plan: §f" + plan.getReadyChunks() + "§7/§f" + plan.getTotalChunks() + " §7chunks" + 
+                             (plan.isComplete() ? " §7(built in §f" + (plan.getBuildNanos() / 1_000_000) + " ms§7)" : ""));
+            if (plan.getUnplannedChunks() > 0) {
+                sender.sendMessage("§7  Unplanned: §c" + plan.getUnplannedChunks() + " §7chunks could not be loaded and are filled live");
+            }
+        }
+        
+        SkyConnectivity connectivity = plan != null ? plan.getConnectivity() : null;
+        if (connectivity != null && connectivity.isApplied()) {
+            int lavaY = (int) Math.floor(state.lavaLevel());
+            sender.sendMessage("§7Sealed cave writes saved: §f" + connectivity.getPrunedTotal() + 
+                             " §7(§f" + connectivity.getPrunedAt(lavaY) + " §7at Y " + lavaY + 
+                             ", §f" + connectivity.getRestoredTotal() + " §7reopened)");
+        }
+        
+        sender.sendMessage("§7Light updates: §f" + scheduler.getLightWritesPerSecond() + " §7blocks in §f" + 
+                         scheduler.getLightSectionsPerSecond() + " §7sections last second (§f" + 
+                         scheduler.getTotalLightWrites() + " §7total, §f" + scheduler.getLightDeferredTicks() + " §7ticks held back)");
+        sender.sendMessage("§7Blocks examined: §f" + writer.getTotalExamined());
+        sender.sendMessage("§7Write backend: §f" + writer.getBackend().getName() + " §7(§f" + writer.getBlocksPerSecond() + " §7blocks/s)");
+        sender.sendMessage("§7Blocks written: §f" + writer.getTotalWritten());
+        sender.sendMessage("§7Chunks skipped: §f" + writer.getTotalChunksSkipped());
+        
+        ChangeJournal journal = arena.getChangeJournal();
+        if (journal != null) {
+            sender.sendMessage("§7Change journal: §f" + journal.getRecorded() + " §7blocks in §f" + journal.getSectionCount() + 
+                             " §7sections (§f" + (journal.getMemoryBytes() / 1024) + " KB§7)");
+        }
+        
+        TemplateWorldReset templateReset = arena.getTemplateReset();
+        if (templateReset.isRunning()) {
+            sender.sendMessage("§7Template reset: §fin progress");
+        } else if (templateReset.getLastResetNanos() > 0) {
+            sender.sendMessage("§7Last template reset: §f" + (templateReset.getLastResetNanos() / 1_000_000) + " ms §7(§f" + 
+                             templateReset.getCopiedFiles() + " §7files, §f" + (templateReset.getCopiedBytes() / (1024 * 1024)) + 
+                             " MB §7copied in §f" + (templateReset.getLastCopyNanos() / 1_000_000) + " ms§7)");
+        }
+        
+        ArenaRestorer restorer = arena.getArenaRestorer();
+        if (restorer != null) {
+            sender.sendMessage("§7Arena restore: §f" + restorer.getRestored() + " §7blocks (§f" + restorer.getPercent() + "%§7, §f" + 
+                             restorer.getBlocksPerSecond() + " §7blocks/s" + 
+                             (restorer.isRunning() ? "" : ", took §f" + (restorer.getRestoreNanos() / 1_000_000) + " ms§7") + ")");
+        }
+        
+        sender.sendMessage("§7Message templates: §f" + messageUtils.getTemplateHits() + " §7reused, §f" + 
+                         messageUtils.getTemplateMisses() + " §7parsed");
+    }
+    
+    private void handleArenasCommand(CommandSender sender) {
+        sender.sendMessage("§6§l=== Arenas ===");
+        for (GameManager arena : plugin.getArenaManager().getArenas()) {
+            GameState state = arena.getState();
+            String status = state.active() ? "§aRunning §7(" + state.phase().getKey() + ", lava §c" + (int) state.lavaLevel() + 
+                                             "§7, §b" + state.alive() + " §7alive)" : "§7Idle";
+            sender.sendMessage("§e" + arena.getId() + " §7- §f" + arena.getSettings().getWorldName() + " §7- " + status);
+        }
+    }
+    
     private void sendHelpMessage(CommandSender sender) {
         sender.sendMessage("§6§l=== MCBLavaEvent Commands ===");
         
         if (sender.hasPermission("lavaevent.admin")) {
-            sender.sendMessage("§e/lavaevent start §7- Start a lava event");
-            sender.sendMessage("§e/lavaevent stop §7- Stop the current event");
+            sender.sendMessage("§e/lavaevent start [arena] §7- Start a lava event");
+            sender.sendMessage("§e/lavaevent stop [arena] §7- Stop the current event");
             sender.sendMessage("§e/lavaevent reload §7- Reload configuration files");
-            sender.sendMessage("§e/lavaevent setup <x> <z> <radius> §7- Setup event area");
+            sender.sendMessage("§e/lavaevent setup <x> <z> <radius> [arena] §7- Setup event area");
             sender.sendMessage("§e/lavaevent waterbuckets [player] §7- Check water bucket usage status");
+            sender.sendMessage("§e/lavaevent stats [arena] §7- Show lava placement statistics");
+            sender.sendMessage("§e/lavaevent restore [arena] §7- Undo every block change made by the last event");
+            sender.sendMessage("§e/lavaevent arenas §7- List arenas and their status");
         } else {
             sender.sendMessage("§e/lavaevent waterbuckets §7- Check your water bucket usage");
         }
         
-        if (plugin.getGameManager().isEventActive()) {
+        for (GameManager arena : plugin.getArenaManager().getArenas()) {
+            GameState state = arena.getState();
+            if (!state.active()) {
+                continue;
+            }
             sender.sendMessage("");
-            sender.sendMessage("§6Current Event Status:");
+            sender.sendMessage("§6Current Event Status (" + state.arenaId() + "):");
             sender.sendMessage("§7- Active: §aYes");
-            sender.sendMessage("§7- Lava Level: §c" + (int) plugin.getGameManager().getCurrentLavaLevel());
-            sender.sendMessage("§7- Players Alive: §b" + plugin.getGameManager().getAlivePlayerCount());
-            sender.sendMessage("§7- Grace Period: " + (plugin.getGameManager().isGracePeriodActive() ? "§aActive" : "§cInactive"));
+            sender.sendMessage("§7- Lava Level: §c" + (int) state.lavaLevel());
+            sender.sendMessage("§7- Players Alive: §b" + state.alive());
+            sender.sendMessage("§7- Grace Period: " + (state.isGracePeriod() ? "§aActive" : "§cInactive"));
         }
     }
     
@@ -287,10 +500,18 @@ public class LavaEventCommand implements CommandExecutor, TabCompleter {
         }
         
         if (args.length == 1) {
-            List<String> completions = Arrays.asList("start", "stop", "reload", "setup", "waterbuckets");
+            List<String> completions = Arrays.asList("start", "stop", "reload", "setup", "waterbuckets", "stats", "restore", "arenas");
             return filterCompletions(completions, args[0]);
         }
         
+        if (args.length == 2 && Arrays.asList("start", "stop", "stats", "restore").contains(args[0].toLowerCase())) {
+            return filterCompletions(new ArrayList<>(plugin.getArenaManager().getArenaIds()), args[1]);
+        }
+        
+        if (args.length == 5 && args[0].equalsIgnoreCase("setup")) {
+            return filterCompletions(new ArrayList<>(plugin.getArenaManager().getArenaIds()), args[4]);
+        }
+        
         if (args.length == 2 && args[0].equalsIgnoreCase("setup")) {
             if (sender instanceof Player) {
                 Player player = (Player) sender;
@@ -313,8 +534,7 @@ public class LavaEventCommand implements CommandExecutor, TabCompleter {
             // Tab complete player names for water bucket command
             List<String> playerNames = new ArrayList<>();
             for (Player player : Bukkit.getOnlinePlayers()) {
-                if (plugin.getGameManager().isPlayerAlive(player.getUniqueId()) || 
-                    plugin.getGameManager().isPlayerSpectator(player.getUniqueId())) {
+                if (plugin.getArenaManager().getArenaOf(player.getUniqueId()) != null) {
                     playerNames.add(player.getName());
                 }
             }
@@ -1,18 +1,38 @@
 package me.mcb.lavaevent.config;
 
 import me.mcb.lavaevent.MCBLavaEventPlugin;
+import me.mcb.lavaevent.arena.ArenaSettings;
+import org.bukkit.Material;
+import org.bukkit.configuration.Configuration;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 
 import java.io.File;
-import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class ConfigManager {
     
     private final MCBLavaEventPlugin plugin;
-    private FileConfiguration config;
-    private FileConfiguration messages;
+    private volatile FileConfiguration config;
+    private volatile MessageBundles messages;
+    private volatile ConfigSnapshot snapshot;
+    private FileConfiguration defaultConfig;
+    private FileConfiguration defaultMessages;
+    
+    // Parsing and saving happen here so a reload never costs the server a tick
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor(
+        Thread.ofVirtual().name("MCBLavaEvent-Config").factory());
+    private final Map<String, Long> ownWrites = new ConcurrentHashMap<>();
     
     private File configFile;
     private File messagesFile;
@@ -23,6 +43,10 @@ public class ConfigManager {
     
     public void loadConfigs() {
         createConfigFiles();
+        
+        // The bundled defaults never change while the server runs, so they are read from the jar once
+        defaultConfig = YamlConfiguration.loadConfiguration(new InputStreamReader(plugin.getResource("config.yml")));
+        defaultMessages = YamlConfiguration.loadConfiguration(new InputStreamReader(plugin.getResource("messages.yml")));
         loadConfigFiles();
     }
     
@@ -41,34 +65,94 @@ public class ConfigManager {
     }
     
     private void loadConfigFiles() {
-        config = YamlConfiguration.loadConfiguration(configFile);
-        messages = YamlConfiguration.loadConfiguration(messagesFile);
+        config = loadWithDefaults(configFile, defaultConfig);
+        messages = loadMessages();
         
-        // Load defaults
-        config.setDefaults(YamlConfiguration.loadConfiguration(
-            new InputStreamReader(plugin.getResource("config.yml"))));
-        messages.setDefaults(YamlConfiguration.loadConfiguration(
-            new InputStreamReader(plugin.getResource("messages.yml"))));
+        // The plugin has to start, so problems are logged and the affected settings keep their defaults
+        List<String> errors = new ArrayList<>();
+        snapshot = ConfigSnapshot.compile(config, errors);
+        for (String error : errors) {
+            plugin.getLogger().warning("config.yml " + error);
+        }
     }
     
-    public void reloadConfigs() {
-        loadConfigFiles();
+    private FileConfiguration loadWithDefaults(File file, Configuration defaults) {
+        FileConfiguration loaded = YamlConfiguration.loadConfiguration(file);
+        loaded.setDefaults(defaults);
+        return loaded;
     }
     
-    public void saveConfig() {
-        try {
-            config.save(configFile);
-        } catch (IOException e) {
-            plugin.getLogger().severe("Could not save config.yml: " + e.getMessage());
-        }
+    // Reads and checks both files on the config thread; only the swap runs on the global region.
+    // The future completes there with the problems found. When there are any, nothing is replaced.
+    public CompletableFuture<List<String>> reloadConfigs() {
+        return submit(() -> {
+            FileConfiguration newConfig = loadWithDefaults(configFile, defaultConfig);
+            return compile(newConfig, loadMessages());
+        });
+    }
+    
+    // Sets the given paths in config.yml, then checks, saves and applies it like a reload.
+    // The file on disk is read again first, so edits made by hand since the last reload are kept.
+    public CompletableFuture<List<String>> updateConfig(Map<String, Object> changes) {
+        return submit(() -> {
+            FileConfiguration newConfig = loadWithDefaults(configFile, defaultConfig);
+            changes.forEach(newConfig::set);
+            Update update = compile(newConfig, messages);
+            if (update.errors().isEmpty()) {
+                newConfig.save(configFile);
+                ownWrites.put(configFile.getName(), configFile.lastModified());
+            }
+            return update;
+        });
+    }
+    
+    // Locale bundles are only listed here; each is read when it is first needed
+    private MessageBundles loadMessages() {
+        return new MessageBundles(plugin.getDataFolder(), loadWithDefaults(messagesFile, defaultMessages), ioExecutor,
+            plugin.getLogger());
     }
     
-    public void saveMessages() {
-        try {
-            messages.save(messagesFile);
-        } catch (IOException e) {
-            plugin.getLogger().severe("Could not save messages.yml: " + e.getMessage());
+    private Update compile(FileConfiguration newConfig, MessageBundles newMessages) {
+        List<String> errors = new ArrayList<>();
+        ConfigSnapshot compiled = ConfigSnapshot.compile(newConfig, errors);
+        for (String error : errors) {
+            plugin.getLogger().warning("config.yml " + error);
         }
+        return new Update(newConfig, newMessages, compiled, errors);
+    }
+    
+    // Updates are read one after another on a single virtual thread and swapped in the order they were read
+    private CompletableFuture<List<String>> submit(Callable<Update> task) {
+        CompletableFuture<List<String>> result = new CompletableFuture<>();
+        ioExecutor.execute(() -> {
+            Update update;
+            try {
+                update = task.call();
+            } catch (Exception e) {
+                plugin.getLogger().severe("Could not read the configuration: " + e.getMessage());
+                result.completeExceptionally(e);
+                return;
+            }
+            plugin.getTaskScheduler().run(() -> {
+                if (update.errors().isEmpty()) {
+                    config = update.config();
+                    messages = update.messages();
+                    snapshot = update.snapshot();
+                }
+                result.complete(update.errors());
+            });
+        });
+        return result;
+    }
+    
+    // True when the file was last written by updateConfig rather than edited by hand
+    public boolean isOwnWrite(String fileName) {
+        Long written = ownWrites.get(fileName);
+        return written != null && written == new File(plugin.getDataFolder(), fileName).lastModified();
+    }
+    
+    public void shutdown() {
+        ioExecutor.shutdown();
     }
     
     public FileConfiguration getConfig() {
@@ -76,51 +160,158 @@ public class ConfigManager {
     }
     
     public FileConfiguration getMessages() {
+        return messages.getDefault();
+    }
+    
+    public MessageBundles getMessageBundles() {
         return messages;
     }
     
+    // The parsed settings. Read it once per task or tick and keep the reference: a reload swaps in a new
+    // snapshot, so values read from one snapshot always belong together.
+    public ConfigSnapshot getSnapshot() {
+        return snapshot;
+    }
+    
     // Convenience methods for common config values
     public int getStartDelay() {
-        return config.getInt("game.start-delay", 30);
+        return snapshot.game().startDelay();
     }
     
     public double getLavaRiseSpeed() {
-        return config.getDouble("game.lava-rise-speed", 0.5);
+        return snapshot.game().lavaRiseSpeed();
     }
     
     public int getMaxLavaHeight() {
-        return config.getInt("game.max-lava-height", 200);
+        return snapshot.game().maxLavaHeight();
     }
     
     public double getBorderShrinkSpeed() {
-        return config.getDouble("game.border-shrink-speed", 0.1);
+        return snapshot.border().shrinkSpeed();
     }
     
     public int getGracePeriod() {
-        return config.getInt("game.grace-period", 60);
+        return snapshot.game().gracePeriod();
     }
     
     public boolean isRandomEventsEnabled() {
-        return config.getBoolean("game.random-events.enabled", true);
+        return snapshot.randomEvents().enabled();
     }
     
     public String getEventWorld() {
-        return config.getString("game.world", "world");
+        return snapshot.game().world();
     }
     
     public int getLavaLevelBroadcastInterval() {
-        return config.getInt("game.lava-level-broadcast-interval", 10);
+        return snapshot.game().lavaLevelBroadcastInterval();
     }
     
     public int getMaxWaterBucketsPerPlayer() {
-        return config.getInt("game.water-buckets.max-uses-per-player", 3);
+        return snapshot.waterBuckets().maxUsesPerPlayer();
     }
     
     public boolean areWaterBucketsDisabled() {
-        return config.getBoolean("game.water-buckets.disabled", false);
+        return snapshot.waterBuckets().disabled();
     }
     
     public boolean showWaterBucketUsageMessages() {
-        return config.getBoolean("game.water-buckets.show-usage-messages", true);
+        return snapshot.waterBuckets().showUsageMessages();
+    }
+    
+    public double getLavaTickBudgetMs() {
+        return snapshot.lavaPlacement().tickBudgetMs();
+    }
+    
+    public int getLavaPriorityRadius() {
+        return snapshot.lavaPlacement().priorityRadius();
+    }
+    
+    public int getLavaBacklogWarningLayers() {
+        return snapshot.lavaPlacement().backlogWarningLayers();
+    }
+    
+    public boolean isLavaPlanEnabled() {
+        return snapshot.lavaPlacement().precomputePlan();
+    }
+    
+    public boolean isLavaPlanVerified() {
+        return snapshot.lavaPlacement().verifyPlan();
+    }
+    
+    public int getWorkerThreads() {
+        return snapshot.lavaPlacement().workerThreads();
+    }
+    
+    public boolean isSealedCavePruningEnabled() {
+        return snapshot.lavaPlacement().pruneSealedCaves();
+    }
+    
+    public boolean isWarmupEnabled() {
+        return snapshot.warmup().enabled();
+    }
+    
+    public int getWarmupMaxChunksInFlight() {
+        return snapshot.warmup().maxChunksInFlight();
+    }
+    
+    public boolean isStaticLavaEnabled() {
+        return snapshot.staticLava().enabled();
+    }
+    
+    public Set<Material> getReplaceableBlocks() {
+        return snapshot.staticLava().replaceable();
+    }
+    
+    public int getLightSectionsPerTick() {
+        return snapshot.lavaPlacement().lightSectionsPerTick();
+    }
+    
+    public String getWriteBackend() {
+        return snapshot.lavaPlacement().writeBackend();
+    }
+    
+    public boolean isJournalEnabled() {
+        return snapshot.restore().journal();
+    }
+    
+    public boolean isAutoRestoreEnabled() {
+        return snapshot.restore().autoRestore();
+    }
+    
+    public double getRestoreTickBudgetMs() {
+        return snapshot.restore().tickBudgetMs();
+    }
+    
+    public boolean isTemplateResetEnabled() {
+        return snapshot.templateReset().enabled();
+    }
+    
+    public int getTemplateResetDelay() {
+        return snapshot.templateReset().delay();
+    }
+    
+    // The default arena from game.* followed by every arena under arenas.<id>
+    public Map<String, ArenaSettings> getArenaSettings() {
+        return snapshot.arenas();
+    }
+    
+    public String getLavaRiseCurve() {
+        return snapshot.lavaRise().curve();
+    }
+    
+    public int getLavaRiseStepSeconds() {
+        return snapshot.lavaRise().stepSeconds();
+    }
+    
+    public int getLavaRisePauseTicks() {
+        return snapshot.lavaRise().pauseTicks();
+    }
+    
+    // Rise speed (blocks per second) from each listed second onwards, ordered by time
+    public NavigableMap<Integer, Double> getLavaRisePiecewise() {
+        return snapshot.lavaRise().piecewise();
+    }
+    
+    private record Update(FileConfiguration config, MessageBundles messages, ConfigSnapshot snapshot, List<String> errors) {
     }
-} 
\ No newline at end of file
+}
\ No newline at end of file
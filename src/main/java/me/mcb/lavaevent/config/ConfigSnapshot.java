@@ -0,0 +1,453 @@
+package me.mcb.lavaevent.config;
+
+import me.mcb.lavaevent.arena.ArenaSettings;
+import org.bukkit.Material;
+import org.bukkit.Sound;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+// config.yml parsed and checked once. Nothing in here changes after it is built, so game loops and region
+// threads read it without locking; a reload builds a new snapshot and swaps it in whole.
+public record ConfigSnapshot(Game game, LavaRise lavaRise, Border border, WaterBuckets waterBuckets,
+                             RandomEvents randomEvents, Effects effects, Spectator spectator, Warmup warmup,
+                             LavaPlacement lavaPlacement, StaticLava staticLava, Restore restore,
+                             TemplateReset templateReset, Reload reload, boolean showLavaUpdates,
+                             Map<String, ArenaSettings> arenas) {
+    
+    public record Game(String world, int startDelay, double lavaRiseSpeed, int maxLavaHeight, double startingLavaLevel,
+                       int gracePeriod, int lavaLevelBroadcastInterval, int reconnectGrace, boolean eliminateSubmerged) {
+    }
+    
+    public record LavaRise(String curve, int stepSeconds, int pauseTicks, NavigableMap<Integer, Double> piecewise) {
+    }
+    
+    public record Border(double shrinkSpeed, int startingSize, int finalSize, int centerX, int centerZ) {
+    }
+    
+    public record WaterBuckets(int maxUsesPerPlayer, boolean disabled, boolean showUsageMessages) {
+    }
+    
+    public record RandomEvents(boolean enabled, double chance, int intervalSeconds, int maxRunning, int tntRainDuration,
+                               int mobSpawnCount, int lightningStormDuration, Map<String, EventSettings> events) {
+        
+        // An event without a section of its own, such as one another plugin added, runs with the defaults
+        public EventSettings get(String key) {
+            return events.getOrDefault(key.toLowerCase(), EventSettings.DEFAULT);
+        }
+    }
+    
+    // game.random-events.events.<key>; options holds every other value in the section for the event to read
+    public record EventSettings(boolean enabled, int weight, int cooldownSeconds, Map<String, Object> options) {
+        
+        public static final EventSettings DEFAULT = new EventSettings(true, 1, 0, Map.of());
+        
+        public int getInt(String key, int def) {
+            return options.get(key) instanceof Number number ? number.intValue() : def;
+        }
+        
+        public double getDouble(String key, double def) {
+            return options.get(key) instanceof Number number ? number.doubleValue() : def;
+        }
+    }
+    
+    public record Effects(boolean deathLightning, Sound deathSound, boolean winFireworks, Sound winSound) {
+    }
+    
+    public record Spectator(boolean allowFlight, boolean safeTeleport, int spectatorHeight) {
+    }
+    
+    public record Warmup(boolean enabled, int maxChunksInFlight) {
+    }
+    
+    public record LavaPlacement(double tickBudgetMs, int priorityRadius, int backlogWarningLayers, int lightSectionsPerTick,
+                                boolean precomputePlan, boolean verifyPlan, boolean pruneSealedCaves, String writeBackend,
+                                int workerThreads) {
+    }
+    
+    public record StaticLava(boolean enabled, Set<Material> replaceable) {
+    }
+    
+    public record Restore(boolean journal, boolean autoRestore, double tickBudgetMs) {
+    }
+    
+    public record TemplateReset(boolean enabled, String templateWorld, int delay) {
+    }
+    
+    public record Reload(boolean watchFiles, int debounceMs) {
+    }
+    
+    private static final Set<String> CURVES = Set.of("linear", "ease-in", "stepped", "piecewise");
+    private static final Set<String> WRITE_BACKENDS = Set.of("auto", "bukkit", "fawe", "memory");
+    
+    // Reads every setting, adding a line to errors for each value that is missing its mark.
+    // Bad values are replaced with their defaults, so the result is always usable.
+    public static ConfigSnapshot compile(FileConfiguration config, List<String> errors) {
+        Reader in = new Reader(config, errors);
+        
+        Game game = new Game(
+            in.string("game.world", "world"),
+            in.integer("game.start-delay", 30, 0, Integer.MAX_VALUE),
+            in.decimal("game.lava-rise-speed", 0.5, 0, Double.MAX_VALUE),
+            in.integer("game.max-lava-height", 200, -2048, 2048),
+            in.decimal("game.starting-lava-level", -64, -2048, 2048),
+            in.integer("game.grace-period", 60, 0, Integer.MAX_VALUE),
+            in.integer("game.lava-level-broadcast-interval", 10, 1, Integer.MAX_VALUE),
+            in.integer("game.reconnect-grace", 30, 0, Integer.MAX_VALUE),
+            in.bool("game.eliminate-submerged", true));
+        if (game.startingLavaLevel() >= game.maxLavaHeight()) {
+            errors.add("game.max-lava-height: must be above game.starting-lava-level");
+        }
+        
+        String curve = in.string("game.lava-rise.curve", "linear").toLowerCase();
+        if (!CURVES.contains(curve)) {
+            errors.add("game.lava-rise.curve: unknown curve '" + curve + "', expected one of " + CURVES);
+            curve = "linear";
+        }
+        LavaRise lavaRise = new LavaRise(curve,
+            in.integer("game.lava-rise.step-seconds", 10, 1, Integer.MAX_VALUE),
+            in.integer("game.lava-rise.pause-ticks", 0, 0, Integer.MAX_VALUE),
+            in.piecewise("game.lava-rise.piecewise"));
+        
+        Border border = new Border(
+            in.decimal("game.border-shrink-speed", 0.1, 0, Double.MAX_VALUE),
+            in.integer("game.border.starting-size", 1000, 1, 59_999_968),
+            in.integer("game.border.final-size", 50, 1, 59_999_968),
+            in.integer("game.border.center-x", 0, -29_999_984, 29_999_984),
+            in.integer("game.border.center-z", 0, -29_999_984, 29_999_984));
+        
+        WaterBuckets waterBuckets = new WaterBuckets(
+            in.integer("game.water-buckets.max-uses-per-player", 3, -1, Integer.MAX_VALUE),
+            in.bool("game.water-buckets.disabled", false),
+            in.bool("game.water-buckets.show-usage-messages", true));
+        
+        RandomEvents randomEvents = new RandomEvents(
+            in.bool("game.random-events.enabled", true),
+            in.decimal("game.random-events.chance", 0.3, 0, 1),
+            in.integer("game.random-events.interval", 120, 1, Integer.MAX_VALUE),
+            in.integer("game.random-events.max-running", 1, 1, 100),
+            in.integer("game.random-events.events.tnt-rain.duration", 10, 1, Integer.MAX_VALUE),
+            in.integer("game.random-events.events.mob-spawn.count", 5, 0, 1000),
+            in.integer("game.random-events.events.lightning-storm.duration", 15, 1, Integer.MAX_VALUE),
+            in.randomEvents("game.random-events.events"));
+        
+        Effects effects = new Effects(
+            in.bool("effects.death-lightning", true),
+            in.sound("effects.death-sound", Sound.ENTITY_LIGHTNING_BOLT_THUNDER),
+            in.bool("effects.win-fireworks", true),
+            in.sound("effects.win-sound", Sound.UI_TOAST_CHALLENGE_COMPLETE));
+        
+        Spectator spectator = new Spectator(
+            in.bool("spectator.allow-flight", true),
+            in.bool("spectator.safe-teleport", true),
+            in.integer("spectator.spectator-height", 250, -2048, 2048));
+        
+        Warmup warmup = new Warmup(
+            in.bool("game.warmup.enabled", true),
+            in.integer("game.warmup.max-chunks-in-flight", 16, 1, 1024));
+        
+        String writeBackend = in.string("game.lava-placement.write-backend", "auto").toLowerCase();
+        if (!WRITE_BACKENDS.contains(writeBackend)) {
+            errors.add("game.lava-placement.write-backend: unknown backend '" + writeBackend + "', expected one of " + WRITE_BACKENDS);
+            writeBackend = "auto";
+        }
+        LavaPlacement lavaPlacement = new LavaPlacement(
+            in.decimal("game.lava-placement.tick-budget-ms", 10.0, 0.1, 50.0),
+            in.integer("game.lava-placement.priority-radius", 48, 0, Integer.MAX_VALUE),
+            in.integer("game.lava-placement.backlog-warning-layers", 3, 0, Integer.MAX_VALUE),
+            in.integer("game.lava-placement.light-sections-per-tick", 0, 0, Integer.MAX_VALUE),
+            in.bool("game.lava-placement.precompute-plan", true),
+            in.bool("game.lava-placement.verify-plan", true),
+            in.bool("game.lava-placement.prune-sealed-caves", false),
+            writeBackend,
+            in.integer("game.lava-placement.worker-threads", 0, 0, 256));
+        
+        StaticLava staticLava = new StaticLava(
+            in.bool("game.static-lava.enabled", false),
+            in.blocks("game.static-lava.replaceable-blocks"));
+        
+        Restore restore = new Restore(
+            in.bool("game.restore.journal", true),
+            in.bool("game.restore.auto-restore", false),
+            in.decimal("game.restore.tick-budget-ms", 10.0, 0.1, 50.0));
+        
+        TemplateReset templateReset = new TemplateReset(
+            in.bool("game.template-reset.enabled", false),
+            in.string("game.template-reset.template-world", "lava_template"),
+            in.integer("game.template-reset.delay", 5, 0, Integer.MAX_VALUE));
+        
+        Reload reload = new Reload(
+            in.bool("reload.watch-files", false),
+            in.integer("reload.debounce-ms", 500, 0, 60_000));
+        
+        return new ConfigSnapshot(game, lavaRise, border, waterBuckets, randomEvents, effects, spectator, warmup,
+            lavaPlacement, staticLava, restore, templateReset, reload, in.bool("debug.show-lava-updates", false),
+            in.arenas(game, border, templateReset));
+    }
+    
+    // Typed reads that record what is wrong instead of silently falling back
+    private static class Reader {
+        
+        private final FileConfiguration config;
+        private final List<String> errors;
+        
+        private Reader(FileConfiguration config, List<String> errors) {
+            this.config = config;
+            this.errors = errors;
+        }
+        
+        private String string(String path, String def) {
+            return string(config, path, path, def);
+        }
+        
+        private String string(ConfigurationSection section, String key, String path, String def) {
+            Object value = section.get(key);
+            if (value == null) {
+                return def;
+            }
+            if (value instanceof ConfigurationSection || value instanceof List) {
+                errors.add(path + ": expected a text value");
+                return def;
+            }
+            return value.toString();
+        }
+        
+        private boolean bool(String path, boolean def) {
+            Object value = config.get(path);
+            if (value == null) {
+                return def;
+            }
+            if (!(value instanceof Boolean)) {
+                errors.add(path + ": expected true or false (was '" + value + "')");
+                return def;
+            }
+            return (Boolean) value;
+        }
+        
+        private int integer(String path, int def, int min, int max) {
+            return integer(config, path, path, def, min, max);
+        }
+        
+        private int integer(ConfigurationSection section, String key, String path, int def, int min, int max) {
+            Object value = section.get(key);
+            if (value == null) {
+                return def;
+            }
+            if (!(value instanceof Integer) && !(value instanceof Long)) {
+                errors.add(path + ": expected a whole number (was '" + value + "')");
+                return def;
+            }
+            long number = ((Number) value).longValue();
+            if (number < min || number > max) {
+                errors.add(path + ": " + number + " is outside " + min + ".." + max);
+                return def;
+            }
+            return (int) number;
+        }
+        
+        private double decimal(String path, double def, double min, double max) {
+            Object value = config.get(path);
+            if (value == null) {
+                return def;
+            }
+            if (!(value instanceof Number)) {
+                errors.add(path + ": expected a number (was '" + value + "')");
+                return def;
+            }
+            double number = ((Number) value).doubleValue();
+            if (Double.isNaN(number) || number < min || number > max) {
+                errors.add(path + ": " + number + " is outside " + min + ".." + (max == Double.MAX_VALUE ? "" : max));
+                return def;
+            }
+            return number;
+        }
+        
+        @SuppressWarnings("deprecation")
+        private Sound sound(String path, Sound def) {
+            String name = string(path, null);
+            if (name == null) {
+                return def;
+            }
+            try {
+                return Sound.valueOf(name.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                errors.add(path + ": unknown sound '" + name + "'");
+                return def;
+            }
+        }
+        
+        private Set<Material> blocks(String path) {
+            Set<Material> blocks = EnumSet.noneOf(Material.class);
+            for (String name : config.getStringList(path)) {
+                Material material = Material.matchMaterial(name);
+                if (material == null || !material.isBlock()) {
+                    errors.add(path + ": '" + name + "' is not a block");
+                    continue;
+                }
+                blocks.add(material);
+            }
+            if (blocks.isEmpty()) {
+                blocks.add(Material.AIR);
+                blocks.add(Material.WATER);
+            }
+            return Collections.unmodifiableSet(blocks);
+        }
+        
+        // Rise speed (blocks per second) from each listed second onwards, ordered by time
+        private NavigableMap<Integer, Double> piecewise(String path) {
+            TreeMap<Integer, Double> speeds = new TreeMap<>();
+            ConfigurationSection section = config.getConfigurationSection(path);
+            if (section == null) {
+                return Collections.unmodifiableNavigableMap(speeds);
+            }
+            for (String key : section.getKeys(false)) {
+                int second;
+                try {
+                    second = Integer.parseInt(key);
+                } catch (NumberFormatException e) {
+                    errors.add(path + "." + key + ": expected a number of seconds as the key");
+                    continue;
+                }
+                Object value = section.get(key);
+                if (!(value instanceof Number) || second < 0 || ((Number) value).doubleValue() < 0) {
+                    errors.add(path + "." + key + ": expected a speed of 0 or more at a time of 0 or more");
+                    continue;
+                }
+                speeds.put(second, ((Number) value).doubleValue());
+            }
+            return Collections.unmodifiableNavigableMap(speeds);
+        }
+        
+        // One EventSettings per section under path, keyed like the sections
+        private Map<String, EventSettings> randomEvents(String path) {
+            Map<String, EventSettings> events = new HashMap<>();
+            ConfigurationSection section = config.getConfigurationSection(path);
+            if (section == null) {
+                return Collections.unmodifiableMap(events);
+            }
+            for (String key : section.getKeys(false)) {
+                ConfigurationSection event = section.getConfigurationSection(key);
+                if (event == null) {
+                    errors.add(path + "." + key + ": expected a section of event settings");
+                    continue;
+                }
+                
+                Map<String, Object> options = new HashMap<>();
+                for (Map.Entry<String, Object> entry : event.getValues(false).entrySet()) {
+                    if (!(entry.getValue() instanceof ConfigurationSection)) {
+                        options.put(entry.getKey(), entry.getValue());
+                    }
+                }
+                String eventPath = path + "." + key;
+                events.put(key.toLowerCase(), new EventSettings(
+                    bool(eventPath + ".enabled", true),
+                    integer(eventPath + ".weight", 1, 0, 1000),
+                    integer(eventPath + ".cooldown", 0, 0, Integer.MAX_VALUE),
+                    Map.copyOf(options)));
+            }
+            return Collections.unmodifiableMap(events);
+        }
+        
+        // The default arena from game.* followed by every arena under arenas.<id>; missing keys fall back to game.*
+        private Map<String, ArenaSettings> arenas(Game game, Border border, TemplateReset templateReset) {
+            Map<String, ConfigurationSection> sections = new LinkedHashMap<>();
+            sections.put(ArenaSettings.DEFAULT_ID, null);
+            ConfigurationSection arenas = config.getConfigurationSection("arenas");
+            if (arenas != null) {
+                for (String id : arenas.getKeys(false)) {
+                    if (!arenas.isConfigurationSection(id)) {
+                        errors.add("arenas." + id + ": expected a section of arena settings");
+                    } else if (!id.equalsIgnoreCase(ArenaSettings.DEFAULT_ID)) {
+                        sections.put(id.toLowerCase(), arenas.getConfigurationSection(id));
+                    }
+                }
+            }
+            
+            List<ArenaSettings> accepted = new ArrayList<>();
+            for (Map.Entry<String, ConfigurationSection> entry : sections.entrySet()) {
+                String id = entry.getKey();
+                ConfigurationSection section = entry.getValue();
+                String prefix = section != null ? "arenas." + id + "." : "game.border.";
+                String worldName = arenaString(id, section, "world", game.world());
+                int startingSize = arenaInt(id, section, "starting-size", border.startingSize(), 1, 59_999_968);
+                int finalSize = arenaInt(id, section, "final-size", border.finalSize(), 1, 59_999_968);
+                if (finalSize > startingSize) {
+                    errors.add(prefix + "final-size: must not be larger than starting-size");
+                    finalSize = startingSize;
+                }
+                ArenaSettings arena = new ArenaSettings(
+                    id,
+                    worldName,
+                    arenaInt(id, section, "center-x", border.centerX(), -29_999_984, 29_999_984),
+                    arenaInt(id, section, "center-z", border.centerZ(), -29_999_984, 29_999_984),
+                    startingSize,
+                    finalSize,
+                    arenaString(id, section, "template-world", templateReset.templateWorld()),
+                    false);
+                
+                // Chunk tickets, the change journal and lava writes all work per chunk, so arenas sharing a world
+                // must not share a single chunk
+                ArenaSettings overlapped = findOverlap(arena, accepted);
+                if (overlapped != null) {
+                    errors.add((section != null ? "arenas." + id : "game.border") + ": overlaps arena '" + overlapped.getId()
+                        + "' in world " + worldName + ", arenas sharing a world must not share chunks; the arena is left out");
+                    continue;
+                }
+                accepted.add(arena);
+            }
+            
+            Map<String, Integer> worldUsers = new HashMap<>();
+            for (ArenaSettings arena : accepted) {
+                worldUsers.merge(arena.getWorldName(), 1, Integer::sum);
+            }
+            
+            Map<String, ArenaSettings> settings = new LinkedHashMap<>();
+            for (ArenaSettings arena : accepted) {
+                settings.put(arena.getId(), new ArenaSettings(arena.getId(), arena.getWorldName(), arena.getCenterX(),
+                    arena.getCenterZ(), arena.getStartingSize(), arena.getFinalSize(), arena.getTemplateWorld(),
+                    worldUsers.get(arena.getWorldName()) > 1));
+            }
+            return Collections.unmodifiableMap(settings);
+        }
+        
+        // The first arena in the same world whose chunks overlap those of arena, or null
+        private static ArenaSettings findOverlap(ArenaSettings arena, List<ArenaSettings> others) {
+            for (ArenaSettings other : others) {
+                if (other.getWorldName().equals(arena.getWorldName())
+                        && overlaps(arena.getCenterX(), arena.getStartingSize(), other.getCenterX(), other.getStartingSize())
+                        && overlaps(arena.getCenterZ(), arena.getStartingSize(), other.getCenterZ(), other.getStartingSize())) {
+                    return other;
+                }
+            }
+            return null;
+        }
+        
+        // Whether two arenas along one axis cover a common chunk, using the same bounds as the match
+        private static boolean overlaps(int center, int size, int otherCenter, int otherSize) {
+            int min = (center - size / 2) >> 4;
+            int max = (center + size / 2) >> 4;
+            int otherMin = (otherCenter - otherSize / 2) >> 4;
+            int otherMax = (otherCenter + otherSize / 2) >> 4;
+            return min <= otherMax && otherMin <= max;
+        }
+        
+        // The default arena has no section of its own and takes game.* as it is
+        private String arenaString(String id, ConfigurationSection section, String key, String def) {
+            return section != null ? string(section, key, "arenas." + id + "." + key, def) : def;
+        }
+        
+        private int arenaInt(String id, ConfigurationSection section, String key, int def, int min, int max) {
+            return section != null ? integer(section, key, "arenas." + id + "." + key, def, min, max) : def;
+        }
+    }
+}
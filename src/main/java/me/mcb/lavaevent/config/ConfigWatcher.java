@@ -0,0 +1,90 @@
+package me.mcb.lavaevent.config;
+
+import me.mcb.lavaevent.MCBLavaEventPlugin;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Watches the data folder on a virtual thread and reloads once config.yml, messages.yml or a messages_<locale>.yml
+// bundle stop changing. Bundles are also watched for being added or deleted, since a reload lists them again.
+public class ConfigWatcher {
+    
+    private static final Set<String> WATCHED = Set.of("config.yml", "messages.yml");
+    
+    private final MCBLavaEventPlugin plugin;
+    private Thread thread;
+    
+    public ConfigWatcher(MCBLavaEventPlugin plugin) {
+        this.plugin = plugin;
+    }
+    
+    // Starts or stops watching to match reload.watch-files
+    public synchronized void setEnabled(boolean enabled) {
+        if (enabled && thread == null) {
+            thread = Thread.ofVirtual().name("MCBLavaEvent-ConfigWatcher").start(this::watch);
+        } else if (!enabled && thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+    
+    private void watch() {
+        Path folder = plugin.getDataFolder().toPath();
+        try (WatchService service = FileSystems.getDefault().newWatchService()) {
+            folder.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+            
+            // Editors often write a file in several steps; wait until it has been quiet for the debounce time
+            boolean pending = false;
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = pending
+                    ? service.poll(plugin.getConfigManager().getSnapshot().reload().debounceMs(), TimeUnit.MILLISECONDS)
+                    : service.take();
+                if (key == null) {
+                    pending = false;
+                    reload();
+                    continue;
+                }
+                
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.context() instanceof Path path && isWatched(event, path.toString())
+                        && !plugin.getConfigManager().isOwnWrite(path.toString())) {
+                        pending = true;
+                    }
+                }
+                key.reset();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Stopped
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not watch the plugin folder for config changes: " + e.getMessage());
+        }
+    }
+    
+    private static boolean isWatched(WatchEvent<?> event, String name) {
+        if (MessageBundles.isBundleFile(name)) {
+            return true;
+        }
+        // A deleted config.yml or messages.yml leaves the last loaded one in use
+        return event.kind() != StandardWatchEventKinds.ENTRY_DELETE && WATCHED.contains(name);
+    }
+    
+    private void reload() {
+        plugin.getConfigManager().reloadConfigs().thenAccept(errors -> {
+            if (errors.isEmpty()) {
+                plugin.applyReloadedConfig();
+                plugin.getLogger().info("Reloaded the configuration after a file change");
+            } else {
+                plugin.getLogger().warning("Ignored the config file change: " + errors.size() + " problem(s), see above");
+            }
+        });
+    }
+}
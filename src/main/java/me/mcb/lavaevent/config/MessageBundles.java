@@ -0,0 +1,118 @@
+package me.mcb.lavaevent.config;
+
+import org.bukkit.configuration.Configuration;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// messages.yml and the optional messages_<locale>.yml bundles next to it, e.g. messages_de.yml or messages_pt_br.yml.
+// A bundle only needs the keys it translates: a missing key falls back to the language bundle (pt_br to pt), then
+// to messages.yml and then to the defaults in the jar. Bundles are read on the config thread the first time a
+// player with that locale needs one; until it is in, those players get messages.yml.
+public class MessageBundles {
+    
+    public static final String DEFAULT = "";
+    
+    private static final Pattern BUNDLE_FILE = Pattern.compile("messages_([a-z]{2,3}(?:_[a-z0-9]+)?)\\.yml");
+    
+    private final File folder;
+    private final FileConfiguration messages;
+    private final Map<String, String> available;
+    private final Executor executor;
+    private final Logger logger;
+    private final Map<String, FileConfiguration> loaded = new ConcurrentHashMap<>();
+    private final Set<String> loading = ConcurrentHashMap.newKeySet();
+    
+    public MessageBundles(File folder, FileConfiguration messages, Executor executor, Logger logger) {
+        this.folder = folder;
+        this.messages = messages;
+        this.available = findBundles(folder);
+        this.executor = executor;
+        this.logger = logger;
+    }
+    
+    // Whether a file in the data folder is a locale bundle, e.g. messages_de.yml
+    public static boolean isBundleFile(String name) {
+        return BUNDLE_FILE.matcher(name.toLowerCase()).matches();
+    }
+    
+    // Bundle tags, lower case, to their file names as found on disk
+    private static Map<String, String> findBundles(File folder) {
+        Map<String, String> found = new HashMap<>();
+        String[] names = folder.list();
+        if (names != null) {
+            for (String name : names) {
+                Matcher matcher = BUNDLE_FILE.matcher(name.toLowerCase());
+                if (matcher.matches()) {
+                    found.put(matcher.group(1), name);
+                }
+            }
+        }
+        return Collections.unmodifiableMap(found);
+    }
+    
+    public FileConfiguration getDefault() {
+        return messages;
+    }
+    
+    // False when there are no locale bundles, so senders can skip looking at each player's locale
+    public boolean hasBundles() {
+        return !available.isEmpty();
+    }
+    
+    // The most specific bundle there is a file for, or DEFAULT
+    public String resolve(Locale locale) {
+        if (locale == null || available.isEmpty()) {
+            return DEFAULT;
+        }
+        String tag = locale.toString().toLowerCase();
+        if (available.containsKey(tag)) {
+            return tag;
+        }
+        String language = locale.getLanguage().toLowerCase();
+        return available.containsKey(language) ? language : DEFAULT;
+    }
+    
+    // The bundle for a resolved tag, or null while it is still being read
+    public FileConfiguration get(String tag) {
+        if (tag.equals(DEFAULT)) {
+            return messages;
+        }
+        FileConfiguration bundle = loaded.get(tag);
+        if (bundle == null && loading.add(tag)) {
+            executor.execute(() -> load(tag));
+        }
+        return bundle;
+    }
+    
+    private void load(String tag) {
+        loaded.put(tag, read(tag));
+    }
+    
+    // Reads the bundle with its parent chain as defaults
+    private FileConfiguration read(String tag) {
+        Configuration parent = messages;
+        int split = tag.indexOf('_');
+        if (split > 0 && available.containsKey(tag.substring(0, split))) {
+            String language = tag.substring(0, split);
+            parent = loaded.computeIfAbsent(language, this::read);
+        }
+        
+        String fileName = available.get(tag);
+        FileConfiguration bundle = YamlConfiguration.loadConfiguration(new File(folder, fileName));
+        bundle.setDefaults(parent);
+        logger.info("Loaded message bundle " + fileName);
+        return bundle;
+    }
+}
@@ -0,0 +1,183 @@
+package me.mcb.lavaevent.game;
+
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import me.mcb.lavaevent.MCBLavaEventPlugin;
+import me.mcb.lavaevent.arena.ArenaSettings;
+import me.mcb.lavaevent.lava.LavaPlacementScheduler;
+import net.kyori.adventure.audience.Audience;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class ArenaManager {
+    
+    private final MCBLavaEventPlugin plugin;
+    
+    // Listeners look arenas up on every region thread while reloads run on the global region, so a reload builds
+    // a new map and publishes it whole; the map itself is never changed
+    private volatile Map<String, GameManager> arenas = Collections.emptyMap();
+    
+    // Online players with lavaevent.admin, kept up to date as players join and leave
+    private final Map<UUID, Player> staff = new ConcurrentHashMap<>();
+    private final Audience staffAudience = Audience.audience(staff.values());
+    
+    private ScheduledTask lavaTask;
+    private int rotation;
+    
+    public ArenaManager(MCBLavaEventPlugin plugin) {
+        this.plugin = plugin;
+    }
+    
+    public void load() {
+        Map<String, GameManager> loaded = new LinkedHashMap<>();
+        for (ArenaSettings settings : plugin.getConfigManager().getArenaSettings().values()) {
+            loaded.put(settings.getId(), new GameManager(plugin, settings));
+        }
+        arenas = Collections.unmodifiableMap(loaded);
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            updateStaff(player);
+        }
+        startLavaTask();
+    }
+    
+    public void updateStaff(Player player) {
+        if (player.hasPermission("lavaevent.admin")) {
+            staff.put(player.getUniqueId(), player);
+        } else {
+            staff.remove(player.getUniqueId());
+        }
+    }
+    
+    public void removeStaff(Player player) {
+        staff.remove(player.getUniqueId());
+    }
+    
+    // Gets operational notices such as arena restores that nobody asked for
+    public Audience getStaff() {
+        return staffAudience;
+    }
+    
+    // Picks up changed arena settings. Running arenas keep their settings until their match ends.
+    public void reload() {
+        Map<String, ArenaSettings> settings = plugin.getConfigManager().getArenaSettings();
+        Map<String, GameManager> reloaded = new LinkedHashMap<>(arenas);
+        reloaded.entrySet().removeIf(entry -> !settings.containsKey(entry.getKey()) && !entry.getValue().isEventActive());
+        for (ArenaSettings arena : settings.values()) {
+            GameManager existing = reloaded.get(arena.getId());
+            if (existing == null) {
+                reloaded.put(arena.getId(), new GameManager(plugin, arena));
+            } else if (!existing.isEventActive()) {
+                existing.setSettings(arena);
+            }
+        }
+        arenas = Collections.unmodifiableMap(reloaded);
+    }
+    
+    public void stopAll() {
+        for (GameManager arena : arenas.values()) {
+            if (arena.isEventActive()) {
+                arena.stopEvent();
+            } else if (arena.isRestoring()) {
+                arena.restoreArenaNow();
+            }
+        }
+        if (lavaTask != null) {
+            lavaTask.cancel();
+            lavaTask = null;
+        }
+    }
+    
+    // One task places lava for every arena, so all of them together stay within the configured tick budget.
+    // It runs on the global region; on Folia it only hands layers to the region threads.
+    private void startLavaTask() {
+        if (lavaTask != null) {
+            return;
+        }
+        
+        lavaTask = plugin.getTaskScheduler().runTimer(task -> tickLava(), 1L, 1L);
+    }
+    
+    private void tickLava() {
+        Collection<GameManager> current = arenas.values();
+        List<LavaPlacementScheduler> running = new ArrayList<>(current.size());
+        for (GameManager arena : current) {
+            if (arena.getLavaScheduler().isRunning()) {
+                running.add(arena.getLavaScheduler());
+            }
+        }
+        if (running.isEmpty()) {
+            return;
+        }
+        
+        // Each arena gets an equal share of what is left; time an arena does not use goes to the ones after it,
+        // and the starting arena rotates so no arena is always served last
+        long deadline = System.nanoTime() + (long) (plugin.getConfigManager().getSnapshot().lavaPlacement().tickBudgetMs() * 1_000_000L);
+        int count = running.size();
+        int first = rotation++ % count;
+        for (int i = 0; i < count; i++) {
+            long now = System.nanoTime();
+            long share = Math.max(0, deadline - now) / (count - i);
+            running.get((first + i) % count).tick(now + share);
+        }
+    }
+    
+    public GameManager getArena(String id) {
+        return id == null ? null : arenas.get(id.toLowerCase());
+    }
+    
+    // The arena from game.*, used wherever no arena is named
+    public GameManager getDefaultArena() {
+        Map<String, GameManager> current = arenas;
+        GameManager arena = current.get(ArenaSettings.DEFAULT_ID);
+        return arena != null ? arena : current.values().iterator().next();
+    }
+    
+    // The arenas as of this call; a later reload does not change what is returned
+    public Collection<GameManager> getArenas() {
+        return arenas.values();
+    }
+    
+    public Collection<String> getArenaIds() {
+        return arenas.keySet();
+    }
+    
+    // The arena the player is playing or spectating in
+    public GameManager getArenaOf(UUID playerId) {
+        for (GameManager arena : arenas.values()) {
+            if (arena.isPlayerAlive(playerId) || arena.isPlayerSpectator(playerId)) {
+                return arena;
+            }
+        }
+        return null;
+    }
+    
+    // The running arena that covers (x, z) in world
+    public GameManager getArenaAt(World world, int x, int z) {
+        for (GameManager arena : arenas.values()) {
+            if (arena.isEventActive() && arena.isInArena(world, x, z)) {
+                return arena;
+            }
+        }
+        return null;
+    }
+    
+    // The arena the player takes part in, or else the running arena they are standing in
+    public GameManager getArenaFor(Player player) {
+        GameManager arena = getArenaOf(player.getUniqueId());
+        if (arena != null) {
+            return arena;
+        }
+        Location location = player.getLocation();
+        return getArenaAt(location.getWorld(), location.getBlockX(), location.getBlockZ());
+    }
+}
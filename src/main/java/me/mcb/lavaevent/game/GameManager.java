@@ -1,12 +1,25 @@
 package me.mcb.lavaevent.game;
 
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
 import me.mcb.lavaevent.MCBLavaEventPlugin;
+import me.mcb.lavaevent.arena.ArenaRestorer;
+import me.mcb.lavaevent.arena.ArenaSettings;
+import me.mcb.lavaevent.arena.ArenaWarmup;
+import me.mcb.lavaevent.arena.ChangeJournal;
+import me.mcb.lavaevent.arena.TemplateWorldReset;
+import me.mcb.lavaevent.config.ConfigSnapshot;
+import me.mcb.lavaevent.lava.BlockWriteBackend;
+import me.mcb.lavaevent.lava.LavaFillPlan;
+import me.mcb.lavaevent.lava.LavaLayerWriter;
+import me.mcb.lavaevent.lava.LavaPlacementScheduler;
+import me.mcb.lavaevent.lava.LavaRiseCurve;
+import me.mcb.lavaevent.lava.LavaRules;
 import me.mcb.lavaevent.utils.MessageUtils;
+import me.mcb.lavaevent.utils.TaskScheduler;
+import net.kyori.adventure.audience.Audience;
+import net.kyori.adventure.sound.Sound;
 import org.bukkit.*;
-import org.bukkit.block.Block;
 import org.bukkit.entity.Player;
-import org.bukkit.scheduler.BukkitRunnable;
-import org.bukkit.scheduler.BukkitTask;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
@@ -15,28 +28,87 @@ public class GameManager {
     
     private final MCBLavaEventPlugin plugin;
     private final MessageUtils messageUtils;
-    
-    private boolean eventActive = false;
-    private boolean gracePeriodActive = false;
-    private World eventWorld;
-    private double currentLavaLevel;
+    private final TaskScheduler scheduler;
+    private ArenaSettings settings;
+    
+    // The settings this match started with; a reload during a match applies from the next one
+    private volatile ConfigSnapshot config;
+    
+    // Read from region threads on Folia, written by the game loop
+    private volatile boolean eventActive = false;
+    private volatile GamePhase phase = GamePhase.ENDED;
+    private volatile World eventWorld;
+    private WorldBorder border;
+    private volatile double currentLavaLevel;
     private final Set<UUID> alivePlayers = ConcurrentHashMap.newKeySet();
     private final Set<UUID> spectators = ConcurrentHashMap.newKeySet();
+    private final MatchAudiences audiences = new MatchAudiences();
+    private final HeightIndex heights = new HeightIndex();
+    
+    // Alive player positions as reported by their own threads, put in a grid by the game loop every tick
+    private final PlayerPositions positions = new PlayerPositions();
+    private volatile PlayerGrid playerGrid = PlayerGrid.EMPTY;
+    
+    // Published by the game loop for readers outside the match
+    private volatile GameState state;
     
     // Water bucket usage tracking
     private final Map<UUID, Integer> waterBucketUsage = new ConcurrentHashMap<>();
     
-    private BukkitTask lavaRiseTask;
-    private BukkitTask borderShrinkTask;
-    private BukkitTask playerCheckTask;
-    private BukkitTask randomEventTask;
+    // Alive players who disconnected, each with the token of the timer that puts them out if they stay away
+    private final Map<UUID, Object> reconnecting = new ConcurrentHashMap<>();
+    
+    // Finishing place of every eliminated player and the winner, kept after the match until the next one starts
+    private final Map<UUID, Integer> eliminationRanks = new ConcurrentHashMap<>();
+    
+    // Arena bounds from the configured starting border
+    private int arenaMinX;
+    private int arenaMinZ;
+    private int arenaMaxX;
+    private int arenaMaxZ;
+    private ArenaWarmup arenaWarmup;
+    
+    // Original states of every block the event changed, kept after the match until the arena is restored
+    private ChangeJournal changeJournal;
+    private ArenaRestorer arenaRestorer;
+    private final TemplateWorldReset templateReset;
+    
+    // The game loop runs on the global region, so every timeline action sees one consistent match state
+    private final MatchTimeline timeline = new MatchTimeline();
+    private ScheduledTask loopTask;
+    private long lastLoopNanos;
+    private long maxLoopNanos;
+    private int countdownLeft;
+    private int countdownWaited;
+    private int lastBroadcastLevel;
+    private double maxLavaHeight;
+    private double borderShrinkSpeed;
+    private int lavaBroadcastInterval;
+    
+    // The rise follows a precomputed curve; riseTick counts the ticks the lava has actually risen, not paused ones
+    private LavaRiseCurve riseCurve;
+    private int riseTick;
+    private int risePauseTicks;
+    private int pauseLeft;
+    private int lastQueuedLayer;
+    private int nextLayerTick;
+    private long mainStartTick = -1;
     
     private RandomEventManager randomEventManager;
+    private final LavaLayerWriter lavaWriter = new LavaLayerWriter();
+    private final LavaPlacementScheduler lavaScheduler;
     
-    public GameManager(MCBLavaEventPlugin plugin) {
+    public GameManager(MCBLavaEventPlugin plugin, ArenaSettings settings) {
         this.plugin = plugin;
         this.messageUtils = plugin.getMessageUtils();
-        this.randomEventManager = new RandomEventManager(plugin);
+        this.scheduler = plugin.getTaskScheduler();
+        this.settings = settings;
+        this.config = plugin.getConfigManager().getSnapshot();
+        this.randomEventManager = new RandomEventManager(plugin, this);
+        this.lavaScheduler = new LavaPlacementScheduler(plugin, lavaWriter);
+        this.lavaScheduler.setLayerListener(this::layerWritten);
+        this.templateReset = new TemplateWorldReset(plugin);
+        publishState();
     }
     
     public boolean startEvent() {
@@ -44,232 +116,369 @@ public class GameManager {
             return false;
         }
         
-        String worldName = plugin.getConfigManager().getEventWorld();
+        String worldName = settings.getWorldName();
         eventWorld = Bukkit.getWorld(worldName);
         
         if (eventWorld == null) {
-            plugin.getLogger().severe("Event world '" + worldName + "' not found!");
+            plugin.getLogger().severe("Event world '" + worldName + "' for arena '" + settings.getId() + "' not found!");
+            return false;
+        }
+        
+        if (isRestoring() || templateReset.isRunning()) {
+            plugin.getLogger().warning("Cannot start the event while the arena is still being restored");
             return false;
         }
         
         // Initialize event
+        config = plugin.getConfigManager().getSnapshot();
         eventActive = true;
-        gracePeriodActive = true;
-        currentLavaLevel = plugin.getConfigManager().getConfig().getDouble("game.starting-lava-level", -64);
+        audiences.setWorld(eventWorld);
+        maxLoopNanos = 0;
+        mainStartTick = -1;
+        riseCurve = null;
+        eliminationRanks.clear();
+        currentLavaLevel = config.game().startingLavaLevel();
+        lavaWriter.reset();
+        lavaWriter.setRules(LavaRules.fromConfig(plugin));
+        lavaWriter.setBackend(BlockWriteBackend.fromConfig(plugin));
+        
+        // An unrestored journal from the previous match is kept, so a later restore goes back to the original arena
+        // A template reset replaces the whole world, so there is nothing to journal
+        if (config.restore().journal() && (!isTemplateResetUsable() || settings.isSharedWorld())) {
+            if (changeJournal == null || !changeJournal.getWorld().equals(eventWorld)) {
+                changeJournal = new ChangeJournal(eventWorld);
+            }
+            lavaWriter.setJournal(changeJournal);
+        } else {
+            changeJournal = null;
+        }
+        
+        int startingSize = settings.getStartingSize();
+        int centerX = settings.getCenterX();
+        int centerZ = settings.getCenterZ();
+        int halfSize = startingSize / 2;
+        arenaMinX = centerX - halfSize;
+        arenaMinZ = centerZ - halfSize;
+        arenaMaxX = centerX + halfSize;
+        arenaMaxZ = centerZ + halfSize;
+        
+        // Load the arena in the background so nothing has to load chunks on the main thread later
+        if (config.warmup().enabled()) {
+            arenaWarmup = new ArenaWarmup(plugin, eventWorld, arenaMinX, arenaMinZ, arenaMaxX, arenaMaxZ);
+            arenaWarmup.start();
+        }
+        
+        // Use the countdown to precompute where lava will go
+        if (config.lavaPlacement().precomputePlan()) {
+            buildLavaPlan();
+        }
+        
+        // Arenas sharing a world each get their own border, sent to their players only
+        border = settings.isSharedWorld() ? Bukkit.createWorldBorder() : eventWorld.getWorldBorder();
         
-        // Add all online players to the event
+        // Add all online players in the arena to the event
         for (Player player : Bukkit.getOnlinePlayers()) {
-            if (player.getWorld().equals(eventWorld)) {
+            Location location = player.getLocation();
+            if (!player.getWorld().equals(eventWorld) || plugin.getArenaManager().getArenaOf(player.getUniqueId()) != null) {
+                continue;
+            }
+            if (!settings.isSharedWorld() || isInArena(eventWorld, location.getBlockX(), location.getBlockZ())) {
                 alivePlayers.add(player.getUniqueId());
+                audiences.addAlive(player);
+                heights.update(player.getUniqueId(), location.getBlockY());
+                positions.update(player, location.getX(), location.getZ());
+                scheduler.runFor(player, () -> applyBorder(player));
             }
         }
         
-        // Start countdown
+        // Start the game loop with the countdown
+        startLoop();
         startCountdown();
+        publishState();
         
         return true;
     }
     
+    private void buildLavaPlan() {
+        LavaFillPlan plan = new LavaFillPlan(plugin, eventWorld, lavaWriter.getRules(), getAlivePlayers(),
+            arenaMinX, arenaMinZ, arenaMaxX, arenaMaxZ,
+            (int) Math.floor(currentLavaLevel), config.game().maxLavaHeight());
+        lavaWriter.setPlan(plan, config.lavaPlacement().verifyPlan());
+        plan.startBuilding(plugin.getWorkerPool(), arenaWarmup != null);
+    }
+    
+    // The game loop: one task per match that advances the timeline once per tick. Every timed part of the
+    // match is an action on the timeline, so their order within a tick is fixed and stopping the match
+    // means cancelling this one task and clearing the timeline.
+    private void startLoop() {
+        timeline.clear();
+        loopTask = scheduler.runTimer(task -> {
+            long start = System.nanoTime();
+            playerGrid = PlayerGrid.build(positions.getAll());
+            timeline.advance();
+            lastLoopNanos = System.nanoTime() - start;
+            maxLoopNanos = Math.max(maxLoopNanos, lastLoopNanos);
+            publishState();
+        }, 1L, 1L);
+    }
+    
+    // Runs at the end of every loop tick, so the state always describes a whole tick
+    private void publishState() {
+        World world = eventWorld;
+        state = new GameState(settings.getId(), world != null ? world.getName() : null, phase, eventActive,
+            currentLavaLevel, getBorderSize(), alivePlayers.size(), spectators.size(), getElapsedSeconds(),
+            getNextLayerSeconds(), timeline.getTick(), timeline.getPending(), lastLoopNanos, maxLoopNanos);
+    }
+    
+    // Seconds since the countdown ended, 0 before that and once the match is over
+    private int getElapsedSeconds() {
+        if (!eventActive || mainStartTick < 0) {
+            return 0;
+        }
+        return (int) ((timeline.getTick() - mainStartTick) / 20);
+    }
+    
+    // Seconds until the lava queues its next layer, or -1 when it is not rising
+    private int getNextLayerSeconds() {
+        if (!eventActive || riseCurve == null || nextLayerTick < 0) {
+            return -1;
+        }
+        int ticks = nextLayerTick - riseTick + pauseLeft;
+        return (Math.max(0, ticks) + 19) / 20;
+    }
+    
+    // The current border width, or the configured starting size outside a match
+    private int getBorderSize() {
+        return eventActive && border != null ? (int) Math.round(border.getSize()) : settings.getStartingSize();
+    }
+    
     private void startCountdown() {
-        int delay = plugin.getConfigManager().getStartDelay();
-        
-        new BukkitRunnable() {
-            int timeLeft = delay;
-            
-            @Override
-            public void run() {
-                if (timeLeft <= 0) {
-                    startMainEvent();
-                    cancel();
-                    return;
-                }
-                
-                if (timeLeft <= 5 || timeLeft % 10 == 0) {
-                    Map<String, String> placeholders = MessageUtils.createPlaceholders("time", String.valueOf(timeLeft));
-                    messageUtils.broadcast("event.starting", placeholders);
-                    messageUtils.broadcastTitle("event.countdown.title", "event.countdown.subtitle", placeholders);
+        phase = GamePhase.COUNTDOWN;
+        countdownLeft = config.game().startDelay();
+        countdownWaited = 0;
+        timeline.repeat(0L, 20L, this::countdownStep);
+    }
+    
+    private boolean countdownStep() {
+        if (countdownLeft <= 0) {
+            // Hold the start until the arena is loaded
+            if (arenaWarmup != null && !arenaWarmup.isComplete()) {
+                phase = GamePhase.WARMUP;
+                if (countdownWaited++ % 5 == 0) {
+                    Map<String, String> placeholders = MessageUtils.createPlaceholders("percent", String.valueOf(arenaWarmup.getPercent()));
+                    messageUtils.broadcast(getAudience(), "event.preparing", placeholders);
                 }
-                
-                timeLeft--;
+                return true;
             }
-        }.runTaskTimer(plugin, 0L, 20L);
+            
+            startMainEvent();
+            return false;
+        }
+        
+        if (countdownLeft <= 5 || countdownLeft % 10 == 0) {
+            Map<String, String> placeholders = MessageUtils.createPlaceholders("time", String.valueOf(countdownLeft));
+            messageUtils.broadcast(getAudience(), "event.starting", placeholders);
+            messageUtils.broadcastTitle(getAudience(), "event.countdown.title", "event.countdown.subtitle", placeholders);
+        }
+        
+        countdownLeft--;
+        return true;
     }
     
     private void startMainEvent() {
-        messageUtils.broadcastRaw("event.started");
+        // Settings that stay fixed for the rest of the match
+        maxLavaHeight = config.game().maxLavaHeight();
+        borderShrinkSpeed = config.border().shrinkSpeed();
+        risePauseTicks = config.lavaRise().pauseTicks();
+        lavaBroadcastInterval = config.game().lavaLevelBroadcastInterval();
+        mainStartTick = timeline.getTick();
         
-        // Start grace period
-        startGracePeriod();
+        messageUtils.broadcastRaw(getAudience(), "event.started");
         
-        // Setup world border
+        // Each second the border shrinks first, then the lava rises inside the new border
+        startGracePeriod();
         setupWorldBorder();
-        
-        // Start lava rising
         startLavaRising();
+        startAliveBroadcasts();
         
-        // Start player checking
-        startPlayerChecking();
+        // Players may have left during the countdown; from here on every elimination checks for a winner
+        checkWin();
         
         // Start random events if enabled
-        if (plugin.getConfigManager().isRandomEventsEnabled()) {
+        if (config.randomEvents().enabled()) {
             startRandomEvents();
         }
     }
     
     private void startGracePeriod() {
-        int gracePeriod = plugin.getConfigManager().getGracePeriod();
+        phase = GamePhase.GRACE;
+        int gracePeriod = config.game().gracePeriod();
         
         Map<String, String> placeholders = MessageUtils.createPlaceholders("time", String.valueOf(gracePeriod));
-        messageUtils.broadcast("event.grace-period.start", placeholders);
+        messageUtils.broadcast(getAudience(), "event.grace-period.start", placeholders);
         
-        new BukkitRunnable() {
-            @Override
-            public void run() {
-                gracePeriodActive = false;
-                messageUtils.broadcastRaw("event.grace-period.end");
+        timeline.schedule(gracePeriod * 20L, () -> {
+            if (phase == GamePhase.GRACE) {
+                phase = GamePhase.RISING;
             }
-        }.runTaskLater(plugin, gracePeriod * 20L);
+            messageUtils.broadcastRaw(getAudience(), "event.grace-period.end");
+        });
     }
     
     private void setupWorldBorder() {
-        WorldBorder border = eventWorld.getWorldBorder();
-        
-        int startingSize = plugin.getConfigManager().getConfig().getInt("game.border.starting-size", 1000);
-        int finalSize = plugin.getConfigManager().getConfig().getInt("game.border.final-size", 50);
-        int centerX = plugin.getConfigManager().getConfig().getInt("game.border.center-x", 0);
-        int centerZ = plugin.getConfigManager().getConfig().getInt("game.border.center-z", 0);
-        
-        border.setCenter(centerX, centerZ);
-        border.setSize(startingSize);
-        
-        // Start border shrinking
-        borderShrinkTask = new BukkitRunnable() {
-            @Override
-            public void run() {
-                if (!eventActive) {
-                    cancel();
-                    return;
-                }
-                
-                double currentSize = border.getSize();
-                double shrinkSpeed = plugin.getConfigManager().getBorderShrinkSpeed();
-                
-                if (currentSize > finalSize) {
-                    border.setSize(Math.max(finalSize, currentSize - shrinkSpeed));
-                }
+        int finalSize = settings.getFinalSize();
+        
+        border.setCenter(settings.getCenterX(), settings.getCenterZ());
+        border.setSize(settings.getStartingSize());
+        
+        timeline.repeat(20L, 20L, () -> {
+            double currentSize = border.getSize();
+            if (currentSize > finalSize) {
+                border.setSize(Math.max(finalSize, currentSize - borderShrinkSpeed));
             }
-        }.runTaskTimer(plugin, 0L, 20L);
+            return true;
+        });
     }
     
     private void startLavaRising() {
-        lavaRiseTask = new BukkitRunnable() {
-            private int lastBroadcastLevel = -999;
+        lavaScheduler.start(eventWorld);
+        lastBroadcastLevel = -999;
+        riseCurve = LavaRiseCurve.fromConfig(plugin, currentLavaLevel, maxLavaHeight);
+        riseTick = 0;
+        pauseLeft = 0;
+        lastQueuedLayer = (int) Math.floor(currentLavaLevel) - 1;
+        nextLayerTick = riseCurve.getTickReaching(lastQueuedLayer + 1, riseTick);
+        timeline.repeat(0L, 1L, this::lavaStep);
+    }
+    
+    // Runs every tick. Every layer the level passed since the previous tick is queued once, lowest first,
+    // so a fast rise never skips a layer and a slow one never queues the same layer twice.
+    private boolean lavaStep() {
+        if (pauseLeft > 0) {
+            pauseLeft--;
+            return true;
+        }
+        
+        currentLavaLevel = riseCurve.getLevel(++riseTick);
+        int currentLevel = (int) Math.floor(currentLavaLevel);
+        if (currentLevel > lastQueuedLayer) {
+            for (int y = lastQueuedLayer + 1; y <= currentLevel; y++) {
+                placeLavaLayer(y);
+            }
+            lastQueuedLayer = currentLevel;
+            nextLayerTick = riseCurve.getTickReaching(currentLevel + 1, riseTick);
+            pauseLeft = risePauseTicks;
             
-            @Override
-            public void run() {
-                if (!eventActive) {
-                    cancel();
-                    return;
-                }
-                
-                double riseSpeed = plugin.getConfigManager().getLavaRiseSpeed();
-                double maxHeight = plugin.getConfigManager().getMaxLavaHeight();
-                
-                if (currentLavaLevel < maxHeight) {
-                    currentLavaLevel += riseSpeed;
-                    placeLavaBlocks();
-                    
-                    // Broadcast lava level at configured intervals
-                    int broadcastInterval = plugin.getConfigManager().getLavaLevelBroadcastInterval();
-                    int currentLevel = (int) Math.floor(currentLavaLevel);
-                    
-                    if (currentLevel >= lastBroadcastLevel + broadcastInterval) {
-                        lastBroadcastLevel = currentLevel;
-                        Map<String, String> placeholders = MessageUtils.createPlaceholders("level", String.valueOf(currentLevel));
-                        messageUtils.broadcast("player.status.lava-level", placeholders);
-                    }
-                }
+            // Broadcast lava level at configured intervals
+            if (currentLevel >= lastBroadcastLevel + lavaBroadcastInterval) {
+                lastBroadcastLevel = currentLevel;
+                Map<String, String> placeholders = MessageUtils.createPlaceholders("level", String.valueOf(currentLevel));
+                messageUtils.broadcast(getAudience(), "player.status.lava-level", placeholders);
+            }
+        }
+        
+        if (riseCurve.isFinished(riseTick)) {
+            if (currentLavaLevel >= maxLavaHeight) {
+                startSuddenDeath();
+            }
+            return false;
+        }
+        return true;
+    }
+    
+    // Called on the global region once every chunk of layer y holds its lava
+    private void layerWritten(int y) {
+        if (phase.isRunning() && config.game().eliminateSubmerged()) {
+            eliminateSubmerged(y);
+        }
+    }
+    
+    // Everyone whose head is in lava once layer y is written is out, fire resistance or not. Only the players with
+    // their feet at or below y are looked at; each is checked on their own thread against the block at their eyes,
+    // so someone who climbed out since their last move or hides in a cave the lava skipped stays in.
+    private void eliminateSubmerged(int y) {
+        for (UUID playerId : heights.below(y + 1)) {
+            if (!alivePlayers.contains(playerId)) {
+                heights.remove(playerId);
+                continue;
             }
-        }.runTaskTimer(plugin, 0L, 20L);
+            // Disconnected players are placed again when they come back
+            Player player = Bukkit.getPlayer(playerId);
+            if (player == null) {
+                continue;
+            }
+            scheduler.runFor(player, () -> {
+                Location eyes = player.getEyeLocation();
+                if (alivePlayers.contains(playerId)
+                        && eyes.getWorld().getType(eyes.getBlockX(), eyes.getBlockY(), eyes.getBlockZ()) == Material.LAVA) {
+                    eliminateByLava(player);
+                }
+            });
+        }
+    }
+    
+    // The lava has nowhere left to go; the shrinking border decides the rest of the match
+    private void startSuddenDeath() {
+        phase = GamePhase.SUDDEN_DEATH;
+        messageUtils.broadcastRaw(getAudience(), "event.sudden-death");
     }
     
-    private void placeLavaBlocks() {
-        WorldBorder border = eventWorld.getWorldBorder();
+    private void placeLavaLayer(int lavaY) {
         Location center = border.getCenter();
         double borderSize = border.getSize();
         int halfSize = (int) (borderSize / 2);
         
-        int lavaY = (int) Math.floor(currentLavaLevel);
-        
         // Place lava in a square pattern covering the entire world border area
         int minX = (int) center.getX() - halfSize;
         int maxX = (int) center.getX() + halfSize;
         int minZ = (int) center.getZ() - halfSize;
         int maxZ = (int) center.getZ() + halfSize;
         
-        for (int x = minX; x <= maxX; x++) {
-            for (int z = minZ; z <= maxZ; z++) {
-                Block block = eventWorld.getBlockAt(x, lavaY, z);
-                if (block.getType() == Material.AIR || block.getType() == Material.WATER) {
-                    block.setType(Material.LAVA);
-                }
-            }
-        }
+        // Placement is spread over the following ticks by the scheduler
+        lavaScheduler.queueLayer(minX, minZ, maxX, maxZ, lavaY, playerGrid);
     }
     
-    private void startPlayerChecking() {
-        playerCheckTask = new BukkitRunnable() {
-            @Override
-            public void run() {
-                if (!eventActive) {
-                    cancel();
-                    return;
-                }
-                
-                // Create a copy of the set to avoid concurrent modification
-                Set<UUID> playersToCheck = new HashSet<>(alivePlayers);
-                
-                for (UUID playerId : playersToCheck) {
-                    Player player = Bukkit.getPlayer(playerId);
-                    
-                    if (player == null || !player.isOnline()) {
-                        // Safely remove disconnected players
-                        alivePlayers.remove(playerId);
-                        continue;
-                    }
-                    
-                    // Only check for disconnected players or those with bypass permission
-                    // Death handling is now done in PlayerListener
-                }
-                
-                // Check win condition
-                if (alivePlayers.size() <= 1) {
-                    endEvent();
-                }
-                
-                // Broadcast alive count every 30 seconds
-                if (System.currentTimeMillis() % 30000 < 1000) {
-                    Map<String, String> placeholders = MessageUtils.createPlaceholders("count", String.valueOf(alivePlayers.size()));
-                    messageUtils.broadcast("player.status.alive", placeholders);
-                }
-            }
-        }.runTaskTimer(plugin, 0L, 20L); // Check every second
+    private void startAliveBroadcasts() {
+        // Broadcast alive count every 30 seconds
+        timeline.repeat(600L, 600L, () -> {
+            Map<String, String> placeholders = MessageUtils.createPlaceholders("count", String.valueOf(alivePlayers.size()));
+            messageUtils.broadcast(getAudience(), "player.status.alive", placeholders);
+            return true;
+        });
     }
     
     private void startRandomEvents() {
-        int interval = plugin.getConfigManager().getConfig().getInt("game.random-events.interval", 120);
-        
-        randomEventTask = new BukkitRunnable() {
-            @Override
-            public void run() {
-                if (!eventActive) {
-                    cancel();
-                    return;
-                }
-                
-                randomEventManager.triggerRandomEvent(eventWorld, new ArrayList<>(alivePlayers));
-            }
-        }.runTaskTimer(plugin, interval * 20L, interval * 20L);
+        long interval = config.randomEvents().intervalSeconds() * 20L;
+        
+        timeline.repeat(interval, interval, () -> {
+            randomEventManager.triggerRandomEvent(eventWorld);
+            return true;
+        });
+        // Every running event is ticked from here, so they all end with the match
+        timeline.repeat(20L, 20L, () -> {
+            randomEventManager.tick();
+            return true;
+        });
+    }
+    
+    // A player the lava got: death effects, then out as a spectator. Runs on the player's thread.
+    public void eliminateByLava(Player player) {
+        playDeathEffects(player);
+        eliminatePlayer(player);
+        player.setGameMode(GameMode.SPECTATOR);
+    }
+    
+    private void playDeathEffects(Player player) {
+        Location loc = player.getLocation();
+        ConfigSnapshot.Effects effects = config.effects();
+        
+        // Lightning effect
+        if (effects.deathLightning()) {
+            loc.getWorld().strikeLightningEffect(loc);
+        }
+        
+        // Sound effect for everyone who hears the arena
+        getAudience().playSound(Sound.sound(effects.deathSound(), Sound.Source.MASTER, 1.0f, 1.0f));
     }
     
     public void eliminatePlayer(Player player) {
@@ -278,19 +487,23 @@ public class GameManager {
         }
         
         alivePlayers.remove(player.getUniqueId());
+        heights.remove(player.getUniqueId());
+        positions.remove(player.getUniqueId());
         spectators.add(player.getUniqueId());
+        audiences.addSpectator(player);
+        eliminationRanks.put(player.getUniqueId(), alivePlayers.size() + 1);
+        requestWinCheck();
         
         // Teleport to safe location
-        if (plugin.getConfigManager().getConfig().getBoolean("spectator.safe-teleport", true)) {
-            int spectatorHeight = plugin.getConfigManager().getConfig().getInt("spectator.spectator-height", 250);
+        if (config.spectator().safeTeleport()) {
             Location safeLocation = player.getLocation().clone();
-            safeLocation.setY(spectatorHeight);
-            player.teleport(safeLocation);
+            safeLocation.setY(config.spectator().spectatorHeight());
+            player.teleportAsync(safeLocation);
         }
         
         // Broadcast elimination
         Map<String, String> placeholders = MessageUtils.createPlaceholders("player", player.getName());
-        messageUtils.broadcastRaw("player.eliminated", placeholders);
+        messageUtils.broadcastRaw(getAudience(), "player.eliminated", placeholders);
         messageUtils.sendMessage(player, "player.spectator-mode");
     }
     
@@ -299,64 +512,242 @@ public class GameManager {
             return;
         }
         
-        if (player.getWorld().equals(eventWorld)) {
+        // Back within the reconnect grace
+        if (alivePlayers.contains(player.getUniqueId())) {
+            reconnecting.remove(player.getUniqueId());
+            audiences.addAlive(player);
+            Location location = player.getLocation();
+            heights.update(player.getUniqueId(), location.getBlockY());
+            positions.update(player, location.getX(), location.getZ());
+            applyBorder(player);
+            return;
+        }
+        
+        Location location = player.getLocation();
+        boolean inArena = settings.isSharedWorld()
+            ? isInArena(location.getWorld(), location.getBlockX(), location.getBlockZ())
+            : player.getWorld().equals(eventWorld);
+        if (inArena) {
             // Event is already running, make them a spectator
             spectators.add(player.getUniqueId());
+            audiences.addSpectator(player);
+            applyBorder(player);
             player.setGameMode(GameMode.SPECTATOR);
             messageUtils.sendMessage(player, "player.joined-late");
         }
     }
     
+    // A participant left and stops receiving the match's messages. An alive player stays in the match for
+    // game.reconnect-grace seconds and is out if they have not come back by then.
+    public void handleQuit(Player player) {
+        UUID playerId = player.getUniqueId();
+        audiences.remove(playerId);
+        if (!alivePlayers.contains(playerId)) {
+            return;
+        }
+        
+        String name = player.getName();
+        long grace = config.game().reconnectGrace() * 20L;
+        if (grace <= 0) {
+            forfeit(playerId, name);
+            return;
+        }
+        
+        // The timeline belongs to the game loop, so the timer is put on it from the global region
+        Object token = new Object();
+        reconnecting.put(playerId, token);
+        scheduler.run(() -> timeline.schedule(grace, () -> {
+            if (reconnecting.remove(playerId, token)) {
+                forfeit(playerId, name);
+            }
+        }));
+    }
+    
+    // Kicked players get no reconnect grace
+    public void handleKick(Player player) {
+        forfeit(player.getUniqueId(), player.getName());
+    }
+    
+    // An alive player who leaves the event world is out
+    public void handleWorldChange(Player player) {
+        if (!player.getWorld().equals(eventWorld)) {
+            forfeit(player.getUniqueId(), player.getName());
+        }
+    }
+    
+    // Called on the player's thread when their block position changed
+    public void updatePosition(Player player, Location to) {
+        if (alivePlayers.contains(player.getUniqueId()) && to.getWorld().equals(eventWorld)) {
+            heights.update(player.getUniqueId(), to.getBlockY());
+            positions.update(player, to.getX(), to.getZ());
+        }
+    }
+    
+    // Takes an alive player out of the match without making them a spectator
+    private void forfeit(UUID playerId, String name) {
+        if (!alivePlayers.remove(playerId)) {
+            return;
+        }
+        heights.remove(playerId);
+        positions.remove(playerId);
+        reconnecting.remove(playerId);
+        audiences.remove(playerId);
+        eliminationRanks.put(playerId, alivePlayers.size() + 1);
+        
+        Map<String, String> placeholders = MessageUtils.createPlaceholders("player", name);
+        messageUtils.broadcastRaw(getAudience(), "player.forfeited", placeholders);
+        requestWinCheck();
+    }
+    
+    // Eliminations happen on the eliminated player's thread; the win check runs with the game loop
+    private void requestWinCheck() {
+        scheduler.run(this::checkWin);
+    }
+    
+    // Ends the match once at most one player is left
+    private void checkWin() {
+        if (phase.isRunning() && alivePlayers.size() <= 1) {
+            endEvent();
+        }
+    }
+    
     public void stopEvent() {
         if (!eventActive) {
             return;
         }
         
         eventActive = false;
-        gracePeriodActive = false;
+        phase = GamePhase.ENDED;
+        Audience audience = getAudience();
         
-        // Cancel all tasks
-        if (lavaRiseTask != null) lavaRiseTask.cancel();
-        if (borderShrinkTask != null) borderShrinkTask.cancel();
-        if (playerCheckTask != null) playerCheckTask.cancel();
-        if (randomEventTask != null) randomEventTask.cancel();
+        // Stop the game loop and drop everything still on the timeline
+        if (loopTask != null) {
+            loopTask.cancel();
+            loopTask = null;
+        }
+        timeline.clear();
+        randomEventManager.cancelAll();
+        lavaScheduler.stop();
+        if (lavaWriter.getPlan() != null) {
+            lavaWriter.getPlan().cancel();
+        }
+        if (arenaWarmup != null) {
+            arenaWarmup.release();
+            arenaWarmup = null;
+        }
         
-        // Reset players
+        // Reset players, each on the thread that owns them
         for (UUID playerId : alivePlayers) {
             Player player = Bukkit.getPlayer(playerId);
             if (player != null) {
-                player.setGameMode(GameMode.SURVIVAL);
+                scheduler.runFor(player, () -> {
+                    player.setGameMode(GameMode.SURVIVAL);
+                    resetBorder(player);
+                });
             }
         }
         
         for (UUID playerId : spectators) {
             Player player = Bukkit.getPlayer(playerId);
             if (player != null) {
-                player.setGameMode(GameMode.SURVIVAL);
+                scheduler.runFor(player, () -> {
+                    player.setGameMode(GameMode.SURVIVAL);
+                    resetBorder(player);
+                });
             }
         }
         
         // Clear collections
         alivePlayers.clear();
         spectators.clear();
+        reconnecting.clear();
+        heights.clear();
+        positions.clear();
+        playerGrid = PlayerGrid.EMPTY;
         clearWaterBucketUsage();
         
-        messageUtils.broadcastRaw("event.stopped");
+        messageUtils.broadcastRaw(audience, "event.stopped");
+        audiences.clear();
+        publishState();
+        
+        boolean templateReset = isTemplateResetUsable() && !settings.isSharedWorld();
+        if (!plugin.isEnabled()) {
+            // Nothing can be scheduled while the plugin is disabled, so the journal is replayed before the world saves
+            if (templateReset || config.restore().autoRestore()) {
+                restoreArenaNow();
+            }
+        } else if (templateReset) {
+            scheduleTemplateReset();
+        } else if (config.restore().autoRestore()) {
+            restoreArena(plugin.getArenaManager().getStaff());
+        }
+    }
+    
+    // Waits a moment so end-of-match effects in the event world can finish before it is unloaded
+    private void scheduleTemplateReset() {
+        String worldName = eventWorld.getName();
+        String templateName = settings.getTemplateWorld();
+        long delay = config.templateReset().delay() * 20L;
+        
+        scheduler.runLater(task -> {
+            if (!eventActive) {
+                templateReset.start(worldName, templateName);
+            }
+        }, delay);
+    }
+    
+    // Folia cannot unload worlds, so there the journal restores the arena even with template resets enabled
+    private boolean isTemplateResetUsable() {
+        return config.templateReset().enabled() && !TaskScheduler.isFolia();
+    }
+    
+    // Replays the change journal under the restore tick budget. Returns false when there is nothing to restore.
+    public boolean restoreArena(Audience requester) {
+        if (eventActive || isRestoring() || changeJournal == null || changeJournal.isEmpty()) {
+            return false;
+        }
+        
+        arenaRestorer = new ArenaRestorer(plugin, changeJournal, BlockWriteBackend.fromConfig(plugin));
+        arenaRestorer.start(requester);
+        return true;
+    }
+    
+    // Finishes the restore on the calling thread, also one that is already under way. Used on disable; Folia has
+    // stopped ticking its regions by then and they cannot be written from here, so there the arena stays as it is.
+    public void restoreArenaNow() {
+        if (changeJournal == null || changeJournal.isEmpty()) {
+            return;
+        }
+        if (TaskScheduler.isFolia()) {
+            plugin.getLogger().warning("Arena '" + settings.getId() + "' could not be restored before shutdown; "
+                + changeJournal.getRecorded() + " changed blocks are left in '" + changeJournal.getWorld().getName() + "'");
+            return;
+        }
+        
+        if (!isRestoring()) {
+            arenaRestorer = new ArenaRestorer(plugin, changeJournal, BlockWriteBackend.fromConfig(plugin));
+        }
+        arenaRestorer.restoreNow();
+    }
+    
+    public boolean isRestoring() {
+        return arenaRestorer != null && arenaRestorer.isRunning();
     }
     
     private void endEvent() {
         if (alivePlayers.size() == 1) {
             UUID winnerId = alivePlayers.iterator().next();
+            eliminationRanks.put(winnerId, 1);
             Player winner = Bukkit.getPlayer(winnerId);
             if (winner != null) {
                 // Play win effects
                 playWinEffects(winner);
                 
                 Map<String, String> placeholders = MessageUtils.createPlaceholders("player", winner.getName());
-                messageUtils.broadcastRaw("event.won", placeholders);
+                messageUtils.broadcastRaw(getAudience(), "event.won", placeholders);
             }
         } else {
-            messageUtils.broadcastRaw("event.no-winner");
+            messageUtils.broadcastRaw(getAudience(), "event.no-winner");
         }
         
         stopEvent();
@@ -366,38 +757,28 @@ public class GameManager {
         Location loc = winner.getLocation();
         World world = loc.getWorld();
         
-        // Fireworks effect
-        if (plugin.getConfigManager().getConfig().getBoolean("effects.win-fireworks", true)) {
+        int chunkX = loc.getBlockX() >> 4;
+        int chunkZ = loc.getBlockZ() >> 4;
+        
+        // Fireworks effect, spawned by the region that owns the winner's chunk
+        if (config.effects().winFireworks()) {
             for (int i = 0; i < 5; i++) {
-                new BukkitRunnable() {
-                    @Override
-                    public void run() {
-                        spawnFirework(loc.clone().add(
-                            (Math.random() - 0.5) * 10,
-                            Math.random() * 10,
-                            (Math.random() - 0.5) * 10
-                        ));
-                    }
-                }.runTaskLater(plugin, i * 10L);
+                scheduler.runAtLater(world, chunkX, chunkZ, task -> spawnFirework(loc.clone().add(
+                    (Math.random() - 0.5) * 10,
+                    Math.random() * 10,
+                    (Math.random() - 0.5) * 10
+                )), i * 10L);
             }
         }
         
-        // Win sound for all players
-        String soundName = plugin.getConfigManager().getConfig().getString("effects.win-sound", "UI_TOAST_CHALLENGE_COMPLETE");
-        try {
-            Sound sound = Sound.valueOf(soundName);
-            for (Player onlinePlayer : Bukkit.getOnlinePlayers()) {
-                if (onlinePlayer.getWorld().equals(world)) {
-                    onlinePlayer.playSound(onlinePlayer.getLocation(), sound, 1.0f, 1.0f);
-                }
-            }
-        } catch (IllegalArgumentException e) {
-            plugin.getLogger().warning("Invalid win sound: " + soundName);
-        }
+        // Win sound for everyone who hears this arena
+        getAudience().playSound(Sound.sound(config.effects().winSound(), Sound.Source.MASTER, 1.0f, 1.0f));
         
         // Particles around winner
-        world.spawnParticle(Particle.FIREWORK, loc, 50, 2, 2, 2, 0.1);
-        world.spawnParticle(Particle.TOTEM_OF_UNDYING, loc, 30, 1, 1, 1, 0.1);
+        scheduler.runAt(world, chunkX, chunkZ, () -> {
+            world.spawnParticle(Particle.FIREWORK, loc, 50, 2, 2, 2, 0.1);
+            world.spawnParticle(Particle.TOTEM_OF_UNDYING, loc, 30, 1, 1, 1, 0.1);
+        });
     }
     
     private void spawnFirework(Location location) {
@@ -412,19 +793,84 @@ public class GameManager {
             .withFlicker()
             .withTrail()
             .build();
-            
+        
         meta.addEffect(effect);
         meta.setPower(1);
         firework.setFireworkMeta(meta);
     }
     
+    private void applyBorder(Player player) {
+        if (settings.isSharedWorld()) {
+            player.setWorldBorder(border);
+        }
+    }
+    
+    private void resetBorder(Player player) {
+        if (settings.isSharedWorld()) {
+            player.setWorldBorder(null);
+        }
+    }
+    
+    // Who hears this arena's announcements: everyone in its world, or just its participants when the world
+    // is shared with other arenas
+    public Audience getAudience() {
+        return settings.isSharedWorld() ? audiences.participants() : audiences.world();
+    }
+    
+    public MatchAudiences getAudiences() {
+        return audiences;
+    }
+    
     // Getters
+    public String getId() {
+        return settings.getId();
+    }
+    
+    public ArenaSettings getSettings() {
+        return settings;
+    }
+    
+    // Only called while no match is running; an unrestored change journal is kept
+    public void setSettings(ArenaSettings settings) {
+        this.settings = settings;
+        this.config = plugin.getConfigManager().getSnapshot();
+        publishState();
+    }
+    
+    public ConfigSnapshot getConfig() {
+        return config;
+    }
+    
+    public WorldBorder getBorder() {
+        return border;
+    }
+    
     public boolean isEventActive() {
         return eventActive;
     }
     
+    // Players are protected from each other until the grace period is over, including during the countdown
     public boolean isGracePeriodActive() {
-        return gracePeriodActive;
+        return eventActive && (phase == GamePhase.WARMUP || phase == GamePhase.COUNTDOWN || phase == GamePhase.GRACE);
+    }
+    
+    public GamePhase getPhase() {
+        return phase;
+    }
+    
+    // The match's timeline; timed effects of a match schedule themselves here instead of starting their own tasks
+    public MatchTimeline getTimeline() {
+        return timeline;
+    }
+    
+    // Where the alive players stood at the start of this tick
+    public PlayerGrid getPlayerGrid() {
+        return playerGrid;
+    }
+    
+    // The arena as of the last game loop tick. Safe to read from any thread.
+    public GameState getState() {
+        return state;
     }
     
     public double getCurrentLavaLevel() {
@@ -435,6 +881,23 @@ public class GameManager {
         return alivePlayers.size();
     }
     
+    public Set<UUID> getAlivePlayers() {
+        return Collections.unmodifiableSet(alivePlayers);
+    }
+    
+    public Set<UUID> getSpectators() {
+        return Collections.unmodifiableSet(spectators);
+    }
+    
+    // The place the player finished in, or 0 while they are still playing or did not take part
+    public int getEliminationRank(UUID playerId) {
+        return eliminationRanks.getOrDefault(playerId, 0);
+    }
+    
+    public Set<UUID> getRankedPlayers() {
+        return Collections.unmodifiableSet(eliminationRanks.keySet());
+    }
+    
     public boolean isPlayerAlive(UUID playerId) {
         return alivePlayers.contains(playerId);
     }
@@ -447,6 +910,44 @@ public class GameManager {
         return eventWorld;
     }
     
+    public boolean isInArena(World world, int x, int z) {
+        return world.equals(eventWorld) && x >= arenaMinX && x <= arenaMaxX && z >= arenaMinZ && z <= arenaMaxZ;
+    }
+    
+    // With static lava nothing flows, so the plugin decides what counts as being in lava
+    public boolean isSubmerged(Location location) {
+        return isInArena(location.getWorld(), location.getBlockX(), location.getBlockZ())
+            && location.getY() <= currentLavaLevel;
+    }
+    
+    public LavaRules getLavaRules() {
+        return lavaWriter.getRules();
+    }
+    
+    public ArenaWarmup getArenaWarmup() {
+        return arenaWarmup;
+    }
+    
+    public ChangeJournal getChangeJournal() {
+        return changeJournal;
+    }
+    
+    public ArenaRestorer getArenaRestorer() {
+        return arenaRestorer;
+    }
+    
+    public TemplateWorldReset getTemplateReset() {
+        return templateReset;
+    }
+    
+    public LavaLayerWriter getLavaWriter() {
+        return lavaWriter;
+    }
+    
+    public LavaPlacementScheduler getLavaScheduler() {
+        return lavaScheduler;
+    }
+    
     // Water bucket usage methods
     public boolean canUseWaterBucket(UUID playerId) {
         if (!eventActive) {
@@ -454,11 +955,11 @@ public class GameManager {
         }
         
         // Check if water buckets are disabled during the event
-        if (plugin.getConfigManager().areWaterBucketsDisabled()) {
+        if (config.waterBuckets().disabled()) {
             return false;
         }
         
-        int maxUses = plugin.getConfigManager().getMaxWaterBucketsPerPlayer();
+        int maxUses = config.waterBuckets().maxUsesPerPlayer();
         if (maxUses == -1) {
             return true; // Unlimited usage
         }
@@ -476,10 +977,10 @@ public class GameManager {
         waterBucketUsage.put(playerId, currentUsage + 1);
         
         // Show usage message if enabled
-        if (plugin.getConfigManager().showWaterBucketUsageMessages()) {
+        if (config.waterBuckets().showUsageMessages()) {
             Player player = Bukkit.getPlayer(playerId);
             if (player != null) {
-                int maxUses = plugin.getConfigManager().getMaxWaterBucketsPerPlayer();
+                int maxUses = config.waterBuckets().maxUsesPerPlayer();
                 int remaining = maxUses == -1 ? -1 : maxUses - (currentUsage + 1);
                 
                 Map<String, String> placeholders = new HashMap<>();
@@ -501,7 +1002,7 @@ public class GameManager {
     }
     
     public int getRemainingWaterBuckets(UUID playerId) {
-        int maxUses = plugin.getConfigManager().getMaxWaterBucketsPerPlayer();
+        int maxUses = config.waterBuckets().maxUsesPerPlayer();
         if (maxUses == -1) {
             return -1; // Unlimited
         }
@@ -0,0 +1,22 @@
+package me.mcb.lavaevent.game;
+
+// Where a match is. The game loop moves forward through these; ENDED is also the state of an idle arena.
+public enum GamePhase {
+    // Countdown is over but the arena is still loading
+    WARMUP,
+    COUNTDOWN,
+    // Lava rises and the border shrinks, but players cannot hurt each other yet
+    GRACE,
+    RISING,
+    // Lava has reached its maximum height; only the border keeps closing in
+    SUDDEN_DEATH,
+    ENDED;
+    
+    public boolean isRunning() {
+        return this == GRACE || this == RISING || this == SUDDEN_DEATH;
+    }
+    
+    public String getKey() {
+        return name().toLowerCase().replace('_', '-');
+    }
+}
@@ -0,0 +1,18 @@
+package me.mcb.lavaevent.game;
+
+// One arena as it was at the end of a game loop tick. GameManager publishes a new one every tick of a match, and
+// when a match starts or stops, so placeholders, commands and anything else outside the match read values that
+// belong together without calling into the live match from their own thread.
+public record GameState(String arenaId, String worldName, GamePhase phase, boolean active, double lavaLevel,
+                        int borderSize, int alive, int spectators, int elapsedSeconds, int nextLayerSeconds,
+                        long tick, int scheduled, long lastLoopNanos, long maxLoopNanos) {
+    
+    // Players are protected from each other until the grace period is over, including during the countdown
+    public boolean isGracePeriod() {
+        return active && (phase == GamePhase.WARMUP || phase == GamePhase.COUNTDOWN || phase == GamePhase.GRACE);
+    }
+    
+    public int participants() {
+        return alive + spectators;
+    }
+}
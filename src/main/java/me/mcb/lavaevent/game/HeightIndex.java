@@ -0,0 +1,60 @@
+package me.mcb.lavaevent.game;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+// The alive players of one match ordered by the block Y of their feet. Movement updates a player only when their
+// block Y changes, and a new lava layer finds everyone under it with one range query over just those players.
+// Updated from the players' region threads and read by the game loop, so both views are concurrent.
+public class HeightIndex {
+    
+    private static final UUID LOWEST = new UUID(Long.MIN_VALUE, Long.MIN_VALUE);
+    private static final Comparator<Entry> ORDER = Comparator.comparingInt(Entry::y).thenComparing(Entry::playerId);
+    
+    private final NavigableSet<Entry> byHeight = new ConcurrentSkipListSet<>(ORDER);
+    private final Map<UUID, Entry> entries = new ConcurrentHashMap<>();
+    
+    public void update(UUID playerId, int y) {
+        Entry previous = entries.get(playerId);
+        if (previous != null && previous.y() == y) {
+            return;
+        }
+        
+        Entry entry = new Entry(y, playerId);
+        entries.put(playerId, entry);
+        if (previous != null) {
+            byHeight.remove(previous);
+        }
+        byHeight.add(entry);
+    }
+    
+    public void remove(UUID playerId) {
+        Entry entry = entries.remove(playerId);
+        if (entry != null) {
+            byHeight.remove(entry);
+        }
+    }
+    
+    public void clear() {
+        entries.clear();
+        byHeight.clear();
+    }
+    
+    // Players whose feet are below y, lowest first
+    public List<UUID> below(int y) {
+        List<UUID> found = new ArrayList<>();
+        for (Entry entry : byHeight.headSet(new Entry(y, LOWEST), false)) {
+            found.add(entry.playerId());
+        }
+        return found;
+    }
+    
+    private record Entry(int y, UUID playerId) {
+    }
+}
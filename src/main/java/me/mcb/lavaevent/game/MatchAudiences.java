@@ -0,0 +1,65 @@
+package me.mcb.lavaevent.game;
+
+import net.kyori.adventure.audience.Audience;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+// The players of one match as Adventure audiences. Each audience is a live view of its map, so it is built once
+// and follows the match as players are added, eliminated, leave or come back, without filtering the player list.
+public class MatchAudiences {
+    
+    private final Map<UUID, Player> alive = new ConcurrentHashMap<>();
+    private final Map<UUID, Player> spectators = new ConcurrentHashMap<>();
+    private final Audience aliveAudience = Audience.audience(alive.values());
+    private final Audience spectatorAudience = Audience.audience(spectators.values());
+    private final Audience participants = Audience.audience(aliveAudience, spectatorAudience);
+    private volatile World world;
+    
+    public void addAlive(Player player) {
+        spectators.remove(player.getUniqueId());
+        alive.put(player.getUniqueId(), player);
+    }
+    
+    public void addSpectator(Player player) {
+        alive.remove(player.getUniqueId());
+        spectators.put(player.getUniqueId(), player);
+    }
+    
+    // A player who left; they are added again if they come back to the match
+    public void remove(UUID playerId) {
+        alive.remove(playerId);
+        spectators.remove(playerId);
+    }
+    
+    public void setWorld(World world) {
+        this.world = world;
+    }
+    
+    // The world is kept, so anything said about the arena after the match still reaches it
+    public void clear() {
+        alive.clear();
+        spectators.clear();
+    }
+    
+    public Audience alive() {
+        return aliveAudience;
+    }
+    
+    public Audience spectators() {
+        return spectatorAudience;
+    }
+    
+    public Audience participants() {
+        return participants;
+    }
+    
+    // Everyone in the event world, whether they play or not
+    public Audience world() {
+        World current = world;
+        return current != null ? current : Audience.empty();
+    }
+}
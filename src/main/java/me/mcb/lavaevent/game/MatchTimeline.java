@@ -0,0 +1,60 @@
+package me.mcb.lavaevent.game;
+
+import java.util.PriorityQueue;
+import java.util.function.BooleanSupplier;
+
+// Actions of one match ordered by the tick they are due. Actions due on the same tick run in the order
+// they were scheduled, so the game loop has one well-defined order for everything that happens in a tick.
+public class MatchTimeline {
+    
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>();
+    private long tick;
+    private long sequence;
+    
+    // Runs action delayTicks after the current tick; 0 means later in the current tick
+    public void schedule(long delayTicks, Runnable action) {
+        queue.add(new Entry(tick + Math.max(0, delayTicks), sequence++, action));
+    }
+    
+    // Runs action after delayTicks and then every periodTicks for as long as it returns true
+    public void repeat(long delayTicks, long periodTicks, BooleanSupplier action) {
+        schedule(delayTicks, () -> {
+            if (action.getAsBoolean()) {
+                repeat(periodTicks, periodTicks, action);
+            }
+        });
+    }
+    
+    // Moves to the next tick and runs everything due by then
+    public void advance() {
+        tick++;
+        Entry next;
+        while ((next = queue.peek()) != null && next.due <= tick) {
+            queue.poll();
+            next.action.run();
+        }
+    }
+    
+    public void clear() {
+        queue.clear();
+        tick = 0;
+        sequence = 0;
+    }
+    
+    // Ticks since the match started
+    public long getTick() {
+        return tick;
+    }
+    
+    public int getPending() {
+        return queue.size();
+    }
+    
+    private record Entry(long due, long sequence, Runnable action) implements Comparable<Entry> {
+        @Override
+        public int compareTo(Entry other) {
+            int byTick = Long.compare(due, other.due);
+            return byTick != 0 ? byTick : Long.compare(sequence, other.sequence);
+        }
+    }
+}
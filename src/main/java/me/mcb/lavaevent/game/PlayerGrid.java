@@ -0,0 +1,294 @@
+package me.mcb.lavaevent.game;
+
+import org.bukkit.entity.Player;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+// Where the alive players of one match stood at the start of a tick, bucketed into 16 block cells. The game loop
+// builds a new grid every tick from the positions the players' own threads reported; queries only look at the
+// cells around the point, compare squared horizontal distances and write their results into an array the caller
+// keeps, so they allocate nothing. Results are indices into this grid and mean nothing to any other one.
+public final class PlayerGrid {
+    
+    private static final int CELL_SHIFT = 4;
+    private static final int CELL_SIZE = 1 << CELL_SHIFT;
+    
+    // A cell key packs both cell coordinates into 44 bits, leaving 20 for the player when sorting
+    private static final int COORD_BITS = 22;
+    private static final int COORD_MASK = (1 << COORD_BITS) - 1;
+    private static final int COORD_OFFSET = 1 << (COORD_BITS - 1);
+    private static final int INDEX_BITS = 20;
+    private static final long INDEX_MASK = (1L << INDEX_BITS) - 1;
+    private static final long NO_KEY = -1;
+    
+    // Up to this many players a nearest query compares every one of them instead of searching rings of cells,
+    // which is cheaper when a few players are spread far apart
+    private static final int LINEAR_SCAN = 32;
+    
+    public static final PlayerGrid EMPTY = new PlayerGrid(new Player[0], new double[0], new double[0],
+        new long[] {NO_KEY}, new int[1], new int[1], 0, 0, -1, -1);
+    
+    private final Player[] players;
+    private final double[] xs;
+    private final double[] zs;
+    
+    // Open addressing table from a cell key to the run of players in that cell
+    private final long[] keys;
+    private final int[] runStart;
+    private final int[] runEnd;
+    
+    // Occupied cells lie within these bounds, which is as far as any search has to look
+    private final int minCellX;
+    private final int minCellZ;
+    private final int maxCellX;
+    private final int maxCellZ;
+    
+    private PlayerGrid(Player[] players, double[] xs, double[] zs, long[] keys, int[] runStart, int[] runEnd,
+                       int minCellX, int minCellZ, int maxCellX, int maxCellZ) {
+        this.players = players;
+        this.xs = xs;
+        this.zs = zs;
+        this.keys = keys;
+        this.runStart = runStart;
+        this.runEnd = runEnd;
+        this.minCellX = minCellX;
+        this.minCellZ = minCellZ;
+        this.maxCellX = maxCellX;
+        this.maxCellZ = maxCellZ;
+    }
+    
+    public static PlayerGrid build(Collection<PlayerPositions.Position> positions) {
+        int capacity = positions.size();
+        Player[] found = new Player[capacity];
+        double[] foundX = new double[capacity];
+        double[] foundZ = new double[capacity];
+        long[] order = new long[capacity];
+        int count = 0;
+        int minCellX = Integer.MAX_VALUE;
+        int minCellZ = Integer.MAX_VALUE;
+        int maxCellX = Integer.MIN_VALUE;
+        int maxCellZ = Integer.MIN_VALUE;
+        
+        for (PlayerPositions.Position position : positions) {
+            // The positions can grow while they are read; whoever came in late is in the next tick's grid
+            if (count == capacity) {
+                break;
+            }
+            
+            int cellX = (int) Math.floor(position.x()) >> CELL_SHIFT;
+            int cellZ = (int) Math.floor(position.z()) >> CELL_SHIFT;
+            found[count] = position.player();
+            foundX[count] = position.x();
+            foundZ[count] = position.z();
+            order[count] = (cellKey(cellX, cellZ) << INDEX_BITS) | count;
+            count++;
+            
+            minCellX = Math.min(minCellX, cellX);
+            minCellZ = Math.min(minCellZ, cellZ);
+            maxCellX = Math.max(maxCellX, cellX);
+            maxCellZ = Math.max(maxCellZ, cellZ);
+        }
+        if (count == 0) {
+            return EMPTY;
+        }
+        
+        // Sorting the packed keys puts the players of each cell next to each other
+        Arrays.sort(order, 0, count);
+        Player[] players = new Player[count];
+        double[] xs = new double[count];
+        double[] zs = new double[count];
+        
+        // At least twice as many slots as cells keeps the probe runs short
+        int tableSize = Integer.highestOneBit(count) << 2;
+        long[] keys = new long[tableSize];
+        int[] runStart = new int[tableSize];
+        int[] runEnd = new int[tableSize];
+        Arrays.fill(keys, NO_KEY);
+        
+        long runKey = NO_KEY;
+        int slot = -1;
+        for (int i = 0; i < count; i++) {
+            int source = (int) (order[i] & INDEX_MASK);
+            players[i] = found[source];
+            xs[i] = foundX[source];
+            zs[i] = foundZ[source];
+            
+            long key = order[i] >>> INDEX_BITS;
+            if (key != runKey) {
+                if (slot >= 0) {
+                    runEnd[slot] = i;
+                }
+                runKey = key;
+                slot = probe(keys, key);
+                keys[slot] = key;
+                runStart[slot] = i;
+            }
+        }
+        runEnd[slot] = count;
+        
+        return new PlayerGrid(players, xs, zs, keys, runStart, runEnd, minCellX, minCellZ, maxCellX, maxCellZ);
+    }
+    
+    private static long cellKey(int cellX, int cellZ) {
+        return ((long) ((cellX + COORD_OFFSET) & COORD_MASK) << COORD_BITS) | ((cellZ + COORD_OFFSET) & COORD_MASK);
+    }
+    
+    // The slot holding key, or the empty slot where it belongs
+    private static int probe(long[] keys, long key) {
+        int mask = keys.length - 1;
+        int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+        while (keys[slot] != NO_KEY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+    
+    // The table slot of a cell, or -1 when nobody is in it
+    private int find(int cellX, int cellZ) {
+        if (cellX < minCellX || cellX > maxCellX || cellZ < minCellZ || cellZ > maxCellZ) {
+            return -1;
+        }
+        int slot = probe(keys, cellKey(cellX, cellZ));
+        return keys[slot] == NO_KEY ? -1 : slot;
+    }
+    
+    // Fills out with the players nearest to (x, z) within maxDistance, nearest first. Returns how many it found,
+    // at most out.length.
+    public int nearest(double x, double z, double maxDistance, int[] out) {
+        int k = out.length;
+        if (players.length == 0 || k == 0) {
+            return 0;
+        }
+        
+        double maxSquared = maxDistance * maxDistance;
+        int found = 0;
+        if (players.length <= LINEAR_SCAN) {
+            for (int i = 0; i < players.length; i++) {
+                found = offer(i, x, z, maxSquared, out, found);
+            }
+            return found;
+        }
+        
+        int cellX = (int) Math.floor(x) >> CELL_SHIFT;
+        int cellZ = (int) Math.floor(z) >> CELL_SHIFT;
+        
+        // Offsets of the occupied bounds from the point's cell; rings outside them hold nobody
+        int fromDx = minCellX - cellX;
+        int toDx = maxCellX - cellX;
+        int fromDz = minCellZ - cellZ;
+        int toDz = maxCellZ - cellZ;
+        int firstRing = Math.max(Math.max(fromDx, -toDx), Math.max(fromDz, -toDz));
+        int lastRing = Math.max(Math.max(-fromDx, toDx), Math.max(-fromDz, toDz));
+        
+        // Squares of cells around the point, nearest first, until no further cell can hold anyone closer
+        for (int ring = Math.max(0, firstRing); ring <= lastRing; ring++) {
+            double reach = Math.max(0, ring - 1) * (double) CELL_SIZE;
+            double limit = found == k ? distanceSquared(out[k - 1], x, z) : maxSquared;
+            if (reach * reach > limit) {
+                break;
+            }
+            
+            // Only the part of the ring inside the occupied bounds is walked
+            for (int dx = Math.max(-ring, fromDx); dx <= Math.min(ring, toDx); dx++) {
+                if (dx == -ring || dx == ring) {
+                    // The outer columns are walked in full
+                    for (int dz = Math.max(-ring, fromDz); dz <= Math.min(ring, toDz); dz++) {
+                        found = offerCell(cellX + dx, cellZ + dz, x, z, maxSquared, out, found);
+                    }
+                } else {
+                    // The ones between only at their two ends
+                    if (-ring >= fromDz) {
+                        found = offerCell(cellX + dx, cellZ - ring, x, z, maxSquared, out, found);
+                    }
+                    if (ring <= toDz) {
+                        found = offerCell(cellX + dx, cellZ + ring, x, z, maxSquared, out, found);
+                    }
+                }
+            }
+        }
+        return found;
+    }
+    
+    private int offerCell(int cellX, int cellZ, double x, double z, double maxSquared, int[] out, int found) {
+        int slot = find(cellX, cellZ);
+        if (slot >= 0) {
+            for (int i = runStart[slot]; i < runEnd[slot]; i++) {
+                found = offer(i, x, z, maxSquared, out, found);
+            }
+        }
+        return found;
+    }
+    
+    // Inserts player i in order if it is close enough; once out is full the farthest one drops off
+    private int offer(int i, double x, double z, double maxSquared, int[] out, int found) {
+        int k = out.length;
+        double distance = distanceSquared(i, x, z);
+        if (found == k ? distance >= distanceSquared(out[k - 1], x, z) : distance > maxSquared) {
+            return found;
+        }
+        
+        int position = found < k ? found++ : k - 1;
+        while (position > 0 && distanceSquared(out[position - 1], x, z) > distance) {
+            out[position] = out[position - 1];
+            position--;
+        }
+        out[position] = i;
+        return found;
+    }
+    
+    // Fills out with players within radius of (x, z), in no particular order. Returns how many it found,
+    // at most out.length.
+    public int within(double x, double z, double radius, int[] out) {
+        if (players.length == 0 || out.length == 0) {
+            return 0;
+        }
+        
+        int fromX = Math.max(minCellX, (int) Math.floor(x - radius) >> CELL_SHIFT);
+        int toX = Math.min(maxCellX, (int) Math.floor(x + radius) >> CELL_SHIFT);
+        int fromZ = Math.max(minCellZ, (int) Math.floor(z - radius) >> CELL_SHIFT);
+        int toZ = Math.min(maxCellZ, (int) Math.floor(z + radius) >> CELL_SHIFT);
+        double limit = radius * radius;
+        int found = 0;
+        
+        for (int cellX = fromX; cellX <= toX; cellX++) {
+            for (int cellZ = fromZ; cellZ <= toZ; cellZ++) {
+                int slot = find(cellX, cellZ);
+                if (slot < 0) {
+                    continue;
+                }
+                for (int i = runStart[slot]; i < runEnd[slot]; i++) {
+                    if (distanceSquared(i, x, z) <= limit) {
+                        out[found++] = i;
+                        if (found == out.length) {
+                            return found;
+                        }
+                    }
+                }
+            }
+        }
+        return found;
+    }
+    
+    private double distanceSquared(int index, double x, double z) {
+        double dx = xs[index] - x;
+        double dz = zs[index] - z;
+        return dx * dx + dz * dz;
+    }
+    
+    public int size() {
+        return players.length;
+    }
+    
+    public Player getPlayer(int index) {
+        return players[index];
+    }
+    
+    public double getX(int index) {
+        return xs[index];
+    }
+    
+    public double getZ(int index) {
+        return zs[index];
+    }
+}
@@ -0,0 +1,35 @@
+package me.mcb.lavaevent.game;
+
+import org.bukkit.entity.Player;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Where the alive players of one match last stood, fed by each player's own region thread whenever their block
+// position changes. The game loop builds its PlayerGrid from this instead of reading players it does not own.
+public class PlayerPositions {
+    
+    private final Map<UUID, Position> positions = new ConcurrentHashMap<>();
+    
+    public void update(Player player, double x, double z) {
+        positions.put(player.getUniqueId(), new Position(player, x, z));
+    }
+    
+    public void remove(UUID playerId) {
+        positions.remove(playerId);
+    }
+    
+    public void clear() {
+        positions.clear();
+    }
+    
+    // A live view; players can come and go while it is read
+    public Collection<Position> getAll() {
+        return positions.values();
+    }
+    
+    public record Position(Player player, double x, double z) {
+    }
+}
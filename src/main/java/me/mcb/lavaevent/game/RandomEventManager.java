@@ -1,198 +1,151 @@
 package me.mcb.lavaevent.game;
 
 import me.mcb.lavaevent.MCBLavaEventPlugin;
-import me.mcb.lavaevent.utils.MessageUtils;
-import org.bukkit.*;
-import org.bukkit.entity.*;
-import org.bukkit.scheduler.BukkitRunnable;
+import me.mcb.lavaevent.config.ConfigSnapshot;
+import me.mcb.lavaevent.randomevents.RandomEvent;
+import me.mcb.lavaevent.randomevents.RandomEventContext;
+import org.bukkit.World;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
-import java.util.UUID;
+import java.util.logging.Level;
 
+// Picks and drives the random events of one match. Events come from the plugin's RandomEventRegistry and are
+// picked by their configured weight, skipping any that are turned off, still cooling down or already running.
+// Everything that is running is ticked from here once per second, and at most max-running events run at a time.
+// Only used on the global region, like the rest of the match timeline.
 public class RandomEventManager {
     
     private final MCBLavaEventPlugin plugin;
-    private final MessageUtils messageUtils;
+    private final GameManager gameManager;
     private final Random random;
+    private final List<Active> running = new ArrayList<>();
     
-    public RandomEventManager(MCBLavaEventPlugin plugin) {
+    // Event keys to the timeline tick their cooldown ends at
+    private final Map<String, Long> cooldowns = new HashMap<>();
+    
+    public RandomEventManager(MCBLavaEventPlugin plugin, GameManager gameManager) {
         this.plugin = plugin;
-        this.messageUtils = plugin.getMessageUtils();
+        this.gameManager = gameManager;
         this.random = new Random();
     }
     
-    public void triggerRandomEvent(World world, List<UUID> alivePlayers) {
-        if (alivePlayers.isEmpty()) {
+    public void triggerRandomEvent(World world) {
+        if (gameManager.getAlivePlayerCount() == 0) {
+            return;
+        }
+        
+        ConfigSnapshot.RandomEvents settings = gameManager.getConfig().randomEvents();
+        if (running.size() >= settings.maxRunning() || random.nextDouble() > settings.chance()) {
             return;
         }
         
-        double chance = plugin.getConfigManager().getConfig().getDouble("game.random-events.chance", 0.3);
-        if (random.nextDouble() > chance) {
+        RandomEvent event = pick(settings);
+        if (event == null) {
             return;
         }
         
-        // Choose random event
-        RandomEventType eventType = getRandomEventType();
+        RandomEvent.Running run;
+        try {
+            run = event.start(new RandomEventContext(plugin, gameManager, world, random, settings, settings.get(event.getKey())));
+        } catch (RuntimeException e) {
+            plugin.getLogger().log(Level.WARNING, "Random event " + event.getKey() + " failed to start", e);
+            finished(event);
+            return;
+        }
         
-        switch (eventType) {
-            case TNT_RAIN:
-                startTNTRain(world, alivePlayers);
-                break;
-            case MOB_SPAWN:
-                spawnHostileMobs(world, alivePlayers);
-                break;
-            case LIGHTNING_STORM:
-                startLightningStorm(world, alivePlayers);
-                break;
+        if (run != null && tick(event, run)) {
+            running.add(new Active(event, run));
+        } else {
+            finished(event);
         }
     }
     
-    private RandomEventType getRandomEventType() {
-        RandomEventType[] events = RandomEventType.values();
-        RandomEventType selectedEvent;
-        
-        do {
-            selectedEvent = events[random.nextInt(events.length)];
-        } while (!isEventEnabled(selectedEvent));
+    // Null when no event can be picked right now
+    private RandomEvent pick(ConfigSnapshot.RandomEvents settings) {
+        long now = gameManager.getTimeline().getTick();
+        int total = 0;
+        for (RandomEvent event : plugin.getRandomEventRegistry().getEvents()) {
+            total += weight(event, settings, now);
+        }
+        if (total == 0) {
+            return null;
+        }
         
-        return selectedEvent;
+        int roll = random.nextInt(total);
+        for (RandomEvent event : plugin.getRandomEventRegistry().getEvents()) {
+            roll -= weight(event, settings, now);
+            if (roll < 0) {
+                return event;
+            }
+        }
+        // Another plugin changed the registry between the two passes
+        return null;
     }
     
-    private boolean isEventEnabled(RandomEventType eventType) {
-        String path = "game.random-events.events." + eventType.getConfigKey() + ".enabled";
-        return plugin.getConfigManager().getConfig().getBoolean(path, true);
+    private int weight(RandomEvent event, ConfigSnapshot.RandomEvents settings, long now) {
+        ConfigSnapshot.EventSettings eventSettings = settings.get(event.getKey());
+        if (!eventSettings.enabled() || isRunning(event) || cooldowns.getOrDefault(event.getKey(), 0L) > now) {
+            return 0;
+        }
+        return eventSettings.weight();
     }
     
-    private void startTNTRain(World world, List<UUID> alivePlayers) {
-        messageUtils.broadcastRaw("random-events.tnt-rain.start");
-        messageUtils.broadcastRaw("random-events.tnt-rain.warning");
-        
-        int duration = plugin.getConfigManager().getConfig().getInt("game.random-events.events.tnt-rain.duration", 10);
-        WorldBorder border = world.getWorldBorder();
-        Location center = border.getCenter();
-        double borderSize = border.getSize();
-        int radius = (int) (borderSize / 2);
-        
-        new BukkitRunnable() {
-            int timeLeft = duration;
-            
-            @Override
-            public void run() {
-                if (timeLeft <= 0) {
-                    cancel();
-                    return;
-                }
-                
-                // Spawn TNT at random locations
-                for (int i = 0; i < 3; i++) {
-                    double x = center.getX() + (random.nextDouble() - 0.5) * borderSize;
-                    double z = center.getZ() + (random.nextDouble() - 0.5) * borderSize;
-                    double y = world.getHighestBlockYAt((int) x, (int) z) + 50;
-                    
-                    Location tntLocation = new Location(world, x, y, z);
-                    TNTPrimed tnt = world.spawn(tntLocation, TNTPrimed.class);
-                    tnt.setFuseTicks(60); // 3 seconds fuse
-                }
-                
-                timeLeft--;
+    private boolean isRunning(RandomEvent event) {
+        for (Active active : running) {
+            if (active.event() == event) {
+                return true;
             }
-        }.runTaskTimer(plugin, 0L, 20L);
+        }
+        return false;
     }
     
-    private void spawnHostileMobs(World world, List<UUID> alivePlayers) {
-        messageUtils.broadcastRaw("random-events.mob-spawn.start");
-        
-        int mobCount = plugin.getConfigManager().getConfig().getInt("game.random-events.events.mob-spawn.count", 5);
-        WorldBorder border = world.getWorldBorder();
-        Location center = border.getCenter();
-        double borderSize = border.getSize();
-        
-        EntityType[] hostileMobs = {
-            EntityType.ZOMBIE, EntityType.SKELETON, EntityType.CREEPER, 
-            EntityType.SPIDER, EntityType.ENDERMAN, EntityType.WITCH
-        };
-        
-        for (int i = 0; i < mobCount; i++) {
-            double x = center.getX() + (random.nextDouble() - 0.5) * borderSize;
-            double z = center.getZ() + (random.nextDouble() - 0.5) * borderSize;
-            double y = world.getHighestBlockYAt((int) x, (int) z) + 1;
-            
-            Location spawnLocation = new Location(world, x, y, z);
-            EntityType mobType = hostileMobs[random.nextInt(hostileMobs.length)];
-            
-            Entity mob = world.spawnEntity(spawnLocation, mobType);
-            if (mob instanceof Monster) {
-                ((Monster) mob).setTarget(getNearestPlayer(spawnLocation, alivePlayers));
+    // Called once per second by the match
+    public void tick() {
+        Iterator<Active> iterator = running.iterator();
+        while (iterator.hasNext()) {
+            Active active = iterator.next();
+            if (!tick(active.event(), active.run())) {
+                iterator.remove();
+                finished(active.event());
             }
         }
     }
     
-    private void startLightningStorm(World world, List<UUID> alivePlayers) {
-        messageUtils.broadcastRaw("random-events.lightning-storm.start");
-        messageUtils.broadcastRaw("random-events.lightning-storm.warning");
-        
-        int duration = plugin.getConfigManager().getConfig().getInt("game.random-events.events.lightning-storm.duration", 15);
-        WorldBorder border = world.getWorldBorder();
-        Location center = border.getCenter();
-        double borderSize = border.getSize();
-        
-        new BukkitRunnable() {
-            int timeLeft = duration;
-            
-            @Override
-            public void run() {
-                if (timeLeft <= 0) {
-                    cancel();
-                    return;
-                }
-                
-                // Strike lightning at random locations
-                for (int i = 0; i < 2; i++) {
-                    double x = center.getX() + (random.nextDouble() - 0.5) * borderSize;
-                    double z = center.getZ() + (random.nextDouble() - 0.5) * borderSize;
-                    double y = world.getHighestBlockYAt((int) x, (int) z);
-                    
-                    Location strikeLocation = new Location(world, x, y, z);
-                    world.strikeLightning(strikeLocation);
-                }
-                
-                timeLeft--;
-            }
-        }.runTaskTimer(plugin, 0L, 20L);
+    // An event that throws is dropped rather than taking the match loop down with it
+    private boolean tick(RandomEvent event, RandomEvent.Running run) {
+        try {
+            return run.tick();
+        } catch (RuntimeException e) {
+            plugin.getLogger().log(Level.WARNING, "Random event " + event.getKey() + " failed", e);
+            return false;
+        }
     }
     
-    private Player getNearestPlayer(Location location, List<UUID> alivePlayers) {
-        Player nearest = null;
-        double nearestDistance = Double.MAX_VALUE;
-        
-        for (UUID playerId : alivePlayers) {
-            Player player = Bukkit.getPlayer(playerId);
-            if (player != null && player.getWorld().equals(location.getWorld())) {
-                double distance = player.getLocation().distance(location);
-                if (distance < nearestDistance) {
-                    nearestDistance = distance;
-                    nearest = player;
-                }
-            }
+    private void finished(RandomEvent event) {
+        int cooldown = gameManager.getConfig().randomEvents().get(event.getKey()).cooldownSeconds();
+        if (cooldown > 0) {
+            cooldowns.put(event.getKey(), gameManager.getTimeline().getTick() + cooldown * 20L);
         }
-        
-        return nearest;
     }
     
-    private enum RandomEventType {
-        TNT_RAIN("tnt-rain"),
-        MOB_SPAWN("mob-spawn"),
-        LIGHTNING_STORM("lightning-storm");
-        
-        private final String configKey;
-        
-        RandomEventType(String configKey) {
-            this.configKey = configKey;
-        }
-        
-        public String getConfigKey() {
-            return configKey;
+    // The match is over; cooldowns start fresh with the next one
+    public void cancelAll() {
+        for (Active active : running) {
+            try {
+                active.run().cancel();
+            } catch (RuntimeException e) {
+                plugin.getLogger().log(Level.WARNING, "Random event " + active.event().getKey() + " failed to stop", e);
+            }
         }
+        running.clear();
+        cooldowns.clear();
+    }
+    
+    private record Active(RandomEvent event, RandomEvent.Running run) {
     }
-} 
\ No newline at end of file
+}
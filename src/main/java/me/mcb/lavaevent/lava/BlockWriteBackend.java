@@ -0,0 +1,66 @@
+package me.mcb.lavaevent.lava;
+
+import me.mcb.lavaevent.MCBLavaEventPlugin;
+import me.mcb.lavaevent.utils.TaskScheduler;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+
+// The path block changes take into the world. Positions are packed into longs with pack().
+public interface BlockWriteBackend {
+    
+    String getName();
+    
+    // Writes data at the first count positions and returns how many blocks were written
+    int write(World world, long[] positions, int count, BlockData data, boolean applyPhysics);
+    
+    // Writes data into every replaceable block of layer y inside the bounds and returns how many blocks were written
+    int fillLayer(World world, int minX, int minZ, int maxX, int maxZ, int y, BlockData data, LavaRules rules, boolean applyPhysics);
+    
+    // Called once all writes of a tick have been issued
+    default void flush() {
+    }
+    
+    static long pack(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (y & 0xFFF);
+    }
+    
+    static int unpackX(long packed) {
+        return (int) (packed >> 38);
+    }
+    
+    static int unpackY(long packed) {
+        return (int) (packed << 52 >> 52);
+    }
+    
+    static int unpackZ(long packed) {
+        return (int) (packed << 26 >> 38);
+    }
+    
+    // Picks the configured backend, falling back to the Bukkit API when the choice is not available.
+    // The FAWE backend batches a tick's writes in one edit session, which region threads cannot share on Folia.
+    static BlockWriteBackend fromConfig(MCBLavaEventPlugin plugin) {
+        String name = plugin.getConfigManager().getWriteBackend().toLowerCase();
+        boolean faweAvailable = !TaskScheduler.isFolia() && Bukkit.getPluginManager().isPluginEnabled("FastAsyncWorldEdit");
+        
+        switch (name) {
+            case "fawe":
+                if (faweAvailable) {
+                    return new FaweBlockWriteBackend(plugin.getLogger());
+                }
+                plugin.getLogger().warning(TaskScheduler.isFolia()
+                    ? "The FAWE write backend is not supported on Folia, using the Bukkit write backend"
+                    : "FastAsyncWorldEdit is not installed, using the Bukkit write backend");
+                return new BukkitBlockWriteBackend();
+            case "memory":
+                return new MemoryBlockWriteBackend();
+            case "bukkit":
+                return new BukkitBlockWriteBackend();
+            case "auto":
+                return faweAvailable ? new FaweBlockWriteBackend(plugin.getLogger()) : new BukkitBlockWriteBackend();
+            default:
+                plugin.getLogger().warning("Unknown write backend '" + name + "', using the Bukkit write backend");
+                return new BukkitBlockWriteBackend();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package me.mcb.lavaevent.lava;
+
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+
+public class BukkitBlockWriteBackend implements BlockWriteBackend {
+    
+    @Override
+    public String getName() {
+        return "bukkit";
+    }
+    
+    @Override
+    public int write(World world, long[] positions, int count, BlockData data, boolean applyPhysics) {
+        for (int i = 0; i < count; i++) {
+            long packed = positions[i];
+            set(world, BlockWriteBackend.unpackX(packed), BlockWriteBackend.unpackY(packed), BlockWriteBackend.unpackZ(packed), data, applyPhysics);
+        }
+        return count;
+    }
+    
+    @Override
+    public int fillLayer(World world, int minX, int minZ, int maxX, int maxZ, int y, BlockData data, LavaRules rules, boolean applyPhysics) {
+        int written = 0;
+        for (int x = minX; x <= maxX; x++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                if (rules.isReplaceable(world.getType(x, y, z))) {
+                    set(world, x, y, z, data, applyPhysics);
+                    written++;
+                }
+            }
+        }
+        return written;
+    }
+    
+    private void set(World world, int x, int y, int z, BlockData data, boolean applyPhysics) {
+        if (applyPhysics) {
+            world.setBlockData(x, y, z, data);
+        } else {
+            // Skipping physics keeps the new block from scheduling fluid ticks and neighbour updates at all, which
+            // costs far more than the Block this path creates; World has no physics-free write of its own
+            world.getBlockAt(x, y, z).setBlockData(data, false);
+        }
+    }
+}
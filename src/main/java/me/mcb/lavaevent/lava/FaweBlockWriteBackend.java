@@ -0,0 +1,137 @@
+package me.mcb.lavaevent.lava;
+
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.bukkit.BukkitAdapter;
+import com.sk89q.worldedit.function.mask.BlockTypeMask;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockType;
+import com.sk89q.worldedit.world.block.BlockTypes;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Writes through FastAsyncWorldEdit edit sessions. Only created when FAWE is enabled,
+// so its classes are never loaded on servers without it. The first time FAWE fails it is logged and every
+// later write goes through the Bukkit backend instead.
+public class FaweBlockWriteBackend implements BlockWriteBackend {
+    
+    private final Logger logger;
+    private World sessionWorld;
+    private EditSession session;
+    private BlockWriteBackend fallback;
+    
+    // The replaceable types of the last rules seen; rules are immutable, so a new instance means new settings
+    private LavaRules replaceableRules;
+    private List<BlockType> replaceable;
+    
+    public FaweBlockWriteBackend(Logger logger) {
+        this.logger = logger;
+    }
+    
+    @Override
+    public String getName() {
+        return "fawe";
+    }
+    
+    @Override
+    public int write(World world, long[] positions, int count, BlockData data, boolean applyPhysics) {
+        if (fallback != null) {
+            return fallback.write(world, positions, count, data, applyPhysics);
+        }
+        try {
+            EditSession editSession = session(world, applyPhysics);
+            BlockState state = BukkitAdapter.adapt(data);
+            for (int i = 0; i < count; i++) {
+                long packed = positions[i];
+                editSession.setBlock(BlockVector3.at(
+                    BlockWriteBackend.unpackX(packed), BlockWriteBackend.unpackY(packed), BlockWriteBackend.unpackZ(packed)), state);
+            }
+            return count;
+        } catch (Exception e) {
+            // Writing the same data again is harmless, so the whole batch goes through the fallback
+            if (fallback == null) {
+                fail(e);
+            }
+            return fallback.write(world, positions, count, data, applyPhysics);
+        }
+    }
+    
+    @Override
+    public int fillLayer(World world, int minX, int minZ, int maxX, int maxZ, int y, BlockData data, LavaRules rules, boolean applyPhysics) {
+        if (fallback != null) {
+            return fallback.fillLayer(world, minX, minZ, maxX, maxZ, y, data, rules, applyPhysics);
+        }
+        try {
+            EditSession editSession = session(world, applyPhysics);
+            CuboidRegion region = new CuboidRegion(BukkitAdapter.adapt(world), BlockVector3.at(minX, y, minZ), BlockVector3.at(maxX, y, maxZ));
+            return editSession.replaceBlocks(region, new BlockTypeMask(editSession, replaceableTypes(rules)), BukkitAdapter.adapt(data));
+        } catch (Exception e) {
+            if (fallback == null) {
+                fail(e);
+            }
+            return fallback.fillLayer(world, minX, minZ, maxX, maxZ, y, data, rules, applyPhysics);
+        }
+    }
+    
+    private List<BlockType> replaceableTypes(LavaRules rules) {
+        if (rules != replaceableRules) {
+            List<BlockType> types = new ArrayList<>();
+            for (Material material : rules.getReplaceable()) {
+                BlockType type = BukkitAdapter.asBlockType(material);
+                if (type != null) {
+                    types.add(type);
+                }
+            }
+            replaceable = types;
+            replaceableRules = rules;
+        }
+        return replaceable;
+    }
+    
+    private void fail(Exception e) {
+        logger.log(Level.WARNING, "FastAsyncWorldEdit failed to write blocks, using the Bukkit write backend from now on", e);
+        fallback = new BukkitBlockWriteBackend();
+        session = null;
+        sessionWorld = null;
+    }
+    
+    // One edit session collects every write of a tick and is flushed to the world in one go
+    private EditSession session(World world, boolean applyPhysics) {
+        if (session != null && !world.equals(sessionWorld)) {
+            flush();
+            if (fallback != null) {
+                throw new IllegalStateException("FastAsyncWorldEdit failed to flush the previous session");
+            }
+        }
+        if (session == null) {
+            sessionWorld = world;
+            session = WorldEdit.getInstance().newEditSessionBuilder()
+                .world(BukkitAdapter.adapt(world))
+                .fastMode(!applyPhysics)
+                .build();
+        }
+        return session;
+    }
+    
+    @Override
+    public void flush() {
+        if (session != null) {
+            EditSession closing = session;
+            session = null;
+            sessionWorld = null;
+            try {
+                closing.close();
+            } catch (Exception e) {
+                fail(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,403 @@
+package me.mcb.lavaevent.lava;
+
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import me.mcb.lavaevent.MCBLavaEventPlugin;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.World;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LavaFillPlan {
+    
+    // Each planned section is a 4096-bit set, one bit per block, indexed by (y << 8) | (z << 4) | x.
+    // Sections with no candidates or only candidates share these arrays until they are modified.
+    private static final int SECTION_WORDS = 64;
+    
+    // Captures handed to region threads and not yet taken, so Folia does not queue the whole arena in one tick
+    private static final int MAX_CAPTURES_IN_FLIGHT = 64;
+    
+    // Times a chunk is left for the warm-up before it is loaded here; every wait is at least one tick
+    private static final int MAX_CHUNK_WAITS = 200;
+    
+    private static final long[] EMPTY = new long[SECTION_WORDS];
+    private static final long[] FULL = new long[SECTION_WORDS];
+    
+    static {
+        Arrays.fill(FULL, -1L);
+    }
+    
+    private final MCBLavaEventPlugin plugin;
+    private final World world;
+    private final LavaRules rules;
+    private final Collection<UUID> players;
+    private final int minChunkX;
+    private final int minChunkZ;
+    private final int width;
+    private final int depth;
+    private final int minSection;
+    private final int sectionCount;
+    
+    // Guarded by lock. Workers hand results back through the completed queue and the global region installs them,
+    // while region threads record block changes and the connectivity pass prunes and restores across chunks.
+    private final long[][][] sections;
+    private final int[] modCount;
+    
+    // Only touched while capturing the chunk, by the thread owning it
+    private final int[] chunkWaits;
+    private final boolean[] unplanned;
+    private final Queue<Integer> captureQueue = new ConcurrentLinkedQueue<>();
+    private final Queue<BuildResult> completed = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger capturesInFlight = new AtomicInteger();
+    
+    // Shared with the connectivity pass, whose bit sets change together with the plan's
+    final Object lock = new Object();
+    
+    private volatile SkyConnectivity connectivity;
+    private ScheduledTask captureTask;
+    private volatile int readyChunks;
+    private volatile int unplannedChunks;
+    private long buildStartNanos;
+    private volatile long buildNanos;
+    
+    public LavaFillPlan(MCBLavaEventPlugin plugin, World world, LavaRules rules, Collection<UUID> players,
+                        int minX, int minZ, int maxX, int maxZ, int minY, int maxY) {
+        this.plugin = plugin;
+        this.world = world;
+        this.rules = rules;
+        this.players = players;
+        this.minChunkX = minX >> 4;
+        this.minChunkZ = minZ >> 4;
+        this.width = (maxX >> 4) - minChunkX + 1;
+        this.depth = (maxZ >> 4) - minChunkZ + 1;
+        this.minSection = Math.max(minY, world.getMinHeight()) >> 4;
+        this.sectionCount = (Math.min(maxY, world.getMaxHeight() - 1) >> 4) - minSection + 1;
+        this.sections = new long[width * depth][][];
+        this.modCount = new int[width * depth];
+        this.chunkWaits = new int[width * depth];
+        this.unplanned = new boolean[width * depth];
+    }
+    
+    // Captures chunk snapshots on the thread owning each chunk under the tick budget and builds the plan on the worker pool
+    public void startBuilding(ExecutorService workerPool, boolean waitForChunks) {
+        for (int i = 0; i < sections.length; i++) {
+            captureQueue.add(i);
+        }
+        buildStartNanos = System.nanoTime();
+        
+        captureTask = plugin.getTaskScheduler().runTimer(task -> {
+            installCompleted();
+            
+            long deadline = System.nanoTime() + (long) (plugin.getConfigManager().getLavaTickBudgetMs() * 1_000_000L);
+            int attempts = captureQueue.size();
+            while (attempts-- > 0 && System.nanoTime() < deadline && capturesInFlight.get() < MAX_CAPTURES_IN_FLIGHT) {
+                Integer index = captureQueue.poll();
+                if (index == null) {
+                    break;
+                }
+                capturesInFlight.incrementAndGet();
+                plugin.getTaskScheduler().runAt(world, minChunkX + index / depth, minChunkZ + index % depth,
+                    () -> capture(workerPool, index, waitForChunks));
+            }
+            
+            if (isComplete()) {
+                buildNanos = System.nanoTime() - buildStartNanos;
+                task.cancel();
+                captureTask = null;
+                
+                // The search cannot see through chunks without a plan, so it would prune what lies behind them
+                if (unplannedChunks > 0) {
+                    plugin.getLogger().warning("Lava plan: " + unplannedChunks + " chunks could not be loaded and are filled live"
+                        + (plugin.getConfigManager().isSealedCavePruningEnabled() ? ", sealed cave pruning is skipped" : ""));
+                } else if (plugin.getConfigManager().isSealedCavePruningEnabled()) {
+                    connectivity = new SkyConnectivity(plugin, this);
+                    connectivity.start(workerPool);
+                }
+            }
+        }, 1L, 1L);
+    }
+    
+    // Runs on the thread owning the chunk
+    private void capture(ExecutorService workerPool, int index, boolean waitForChunks) {
+        capturesInFlight.decrementAndGet();
+        int cx = minChunkX + index / depth;
+        int cz = minChunkZ + index % depth;
+        
+        // Leave chunks the warm-up has not loaded yet for a later tick instead of loading them here. One the
+        // warm-up could not load would be waited on forever, so after a while it is loaded without blocking.
+        if (waitForChunks && !world.isChunkLoaded(cx, cz)) {
+            if (++chunkWaits[index] < MAX_CHUNK_WAITS) {
+                captureQueue.add(index);
+                return;
+            }
+            capturesInFlight.incrementAndGet();
+            world.getChunkAtAsync(cx, cz, true).whenComplete((chunk, error) -> {
+                capturesInFlight.decrementAndGet();
+                if (error != null || chunk == null) {
+                    completed.add(new BuildResult(index, stamp(index), null));
+                } else {
+                    submit(workerPool, index, chunk.getChunkSnapshot(false, false, false));
+                }
+            });
+            return;
+        }
+        submit(workerPool, index, world.getChunkAt(cx, cz).getChunkSnapshot(false, false, false));
+    }
+    
+    private void submit(ExecutorService workerPool, int index, ChunkSnapshot snapshot) {
+        int stamp = stamp(index);
+        workerPool.execute(() -> completed.add(new BuildResult(index, stamp, build(snapshot))));
+    }
+    
+    private int stamp(int index) {
+        synchronized (lock) {
+            return modCount[index];
+        }
+    }
+    
+    public void cancel() {
+        if (captureTask != null) {
+            captureTask.cancel();
+            captureTask = null;
+        }
+        captureQueue.clear();
+        completed.clear();
+        if (connectivity != null) {
+            connectivity.cancel();
+        }
+    }
+    
+    private void installCompleted() {
+        BuildResult result;
+        while ((result = completed.poll()) != null) {
+            synchronized (lock) {
+                install(result);
+            }
+        }
+    }
+    
+    private void install(BuildResult result) {
+        // A chunk that could not be loaded keeps no plan, so the writer fills it live
+        if (result.sections == null) {
+            if (sections[result.index] == null && !unplanned[result.index]) {
+                unplanned[result.index] = true;
+                unplannedChunks++;
+            }
+            return;
+        }
+        
+        // Blocks changed after the snapshot was taken, so the result is stale and the chunk is captured again
+        if (modCount[result.index] != result.stamp) {
+            captureQueue.add(result.index);
+            return;
+        }
+        if (sections[result.index] == null) {
+            readyChunks++;
+        }
+        sections[result.index] = result.sections;
+    }
+    
+    // Runs on a worker thread
+    private long[][] build(ChunkSnapshot snapshot) {
+        long[][] built = new long[sectionCount][];
+        for (int s = 0; s < sectionCount; s++) {
+            int baseY = (minSection + s) << 4;
+            long[] bits = null;
+            int count = 0;
+            
+            for (int y = 0; y < 16; y++) {
+                for (int z = 0; z < 16; z++) {
+                    for (int x = 0; x < 16; x++) {
+                        if (rules.isReplaceable(snapshot.getBlockType(x, baseY + y, z))) {
+                            if (bits == null) {
+                                bits = new long[SECTION_WORDS];
+                            }
+                            int bit = (y << 8) | (z << 4) | x;
+                            bits[bit >>> 6] |= 1L << bit;
+                            count++;
+                        }
+                    }
+                }
+            }
+            
+            built[s] = count == 0 ? EMPTY : count == 4096 ? FULL : bits;
+        }
+        return built;
+    }
+    
+    // Copies the 256 bits of layer y in chunk (cx, cz) into the first four words of layer. Returns false when that
+    // part of the plan is not ready. A copy, because other threads keep changing the section while it is replayed.
+    public boolean copyLayer(int cx, int cz, int y, long[] layer) {
+        int index = indexOf(cx, cz);
+        int s = (y >> 4) - minSection;
+        if (index < 0 || s < 0 || s >= sectionCount) {
+            return false;
+        }
+        synchronized (lock) {
+            if (sections[index] == null) {
+                return false;
+            }
+            System.arraycopy(sections[index][s], (y & 15) << 2, layer, 0, 4);
+            return true;
+        }
+    }
+    
+    // Records that the block at (x, y, z) now does or does not need lava
+    public void update(int x, int y, int z, boolean needsLava) {
+        int index = indexOf(x >> 4, z >> 4);
+        if (index < 0) {
+            return;
+        }
+        
+        synchronized (lock) {
+            modCount[index]++;
+            SkyConnectivity current = connectivity;
+            if (current != null) {
+                needsLava = current.changed(x, y, z, needsLava);
+            }
+            setCandidate(x, y, z, needsLava);
+        }
+    }
+    
+    // The methods below are only called with lock held
+    void setCandidate(int x, int y, int z, boolean needsLava) {
+        int index = indexOf(x >> 4, z >> 4);
+        int s = (y >> 4) - minSection;
+        if (index < 0 || sections[index] == null || s < 0 || s >= sectionCount) {
+            return;
+        }
+        
+        long[] bits = sections[index][s];
+        int bit = ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+        long mask = 1L << bit;
+        boolean current = (bits[bit >>> 6] & mask) != 0;
+        if (current == needsLava) {
+            return;
+        }
+        
+        if (bits == EMPTY || bits == FULL) {
+            bits = bits.clone();
+            sections[index][s] = bits;
+        }
+        if (needsLava) {
+            bits[bit >>> 6] |= mask;
+        } else {
+            bits[bit >>> 6] &= ~mask;
+        }
+    }
+    
+    // Replaces a whole section, used when the connectivity pass prunes it
+    void setSection(int index, int s, long[] bits) {
+        if (Arrays.equals(bits, EMPTY)) {
+            bits = EMPTY;
+        } else if (Arrays.equals(bits, FULL)) {
+            bits = FULL;
+        }
+        sections[index][s] = bits;
+    }
+    
+    long[] getSection(int index, int s) {
+        return sections[index] != null ? sections[index][s] : null;
+    }
+    
+    // A copy that later updates do not touch; the shared EMPTY and FULL arrays are never modified, so they are kept
+    long[][][] copySections() {
+        long[][][] copy = new long[sections.length][][];
+        synchronized (lock) {
+            for (int index = 0; index < sections.length; index++) {
+                long[][] chunk = sections[index];
+                if (chunk == null) {
+                    continue;
+                }
+                copy[index] = new long[chunk.length][];
+                for (int s = 0; s < chunk.length; s++) {
+                    long[] bits = chunk[s];
+                    copy[index][s] = bits == EMPTY || bits == FULL ? bits : bits.clone();
+                }
+            }
+        }
+        return copy;
+    }
+    
+    static boolean isFull(long[] bits) {
+        return bits == FULL;
+    }
+    
+    static boolean isEmpty(long[] bits) {
+        return bits == EMPTY;
+    }
+    
+    int indexOf(int cx, int cz) {
+        int dx = cx - minChunkX;
+        int dz = cz - minChunkZ;
+        if (dx < 0 || dz < 0 || dx >= width || dz >= depth) {
+            return -1;
+        }
+        return dx * depth + dz;
+    }
+    
+    public SkyConnectivity getConnectivity() {
+        return connectivity;
+    }
+    
+    // Alive players of the arena this plan belongs to
+    public Collection<UUID> getPlayers() {
+        return players;
+    }
+    
+    public World getWorld() {
+        return world;
+    }
+    
+    public int getMinChunkX() {
+        return minChunkX;
+    }
+    
+    public int getMinChunkZ() {
+        return minChunkZ;
+    }
+    
+    public int getWidth() {
+        return width;
+    }
+    
+    public int getDepth() {
+        return depth;
+    }
+    
+    public int getMinSection() {
+        return minSection;
+    }
+    
+    public int getSectionCount() {
+        return sectionCount;
+    }
+    
+    public boolean isComplete() {
+        return readyChunks + unplannedChunks == sections.length;
+    }
+    
+    public int getReadyChunks() {
+        return readyChunks;
+    }
+    
+    public int getUnplannedChunks() {
+        return unplannedChunks;
+    }
+    
+    public int getTotalChunks() {
+        return sections.length;
+    }
+    
+    public long getBuildNanos() {
+        return buildNanos;
+    }
+    
+    private record BuildResult(int index, int stamp, long[][] sections) {
+    }
+}
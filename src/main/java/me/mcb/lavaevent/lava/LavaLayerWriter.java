@@ -0,0 +1,379 @@
+package me.mcb.lavaevent.lava;
+
+import me.mcb.lavaevent.arena.ChangeJournal;
+import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.concurrent.atomic.LongAdder;
+
+// On Folia chunks of one layer are written by several region threads at once. Each chunk only touches its own
+// grid slot, and the counters and position buffers are safe to share between threads.
+public class LavaLayerWriter {
+    
+    // Result of writeChunk for a chunk that was skipped without being examined
+    public static final long SKIPPED = -1L;
+    
+    // Section states, cached per chunk for the section the lava is currently in
+    private static final byte SECTION_UNKNOWN = 0;
+    private static final byte SECTION_MIXED = 1;
+    private static final byte SECTION_CLOSED = 2;
+    
+    private final BlockData lavaData = Material.LAVA.createBlockData();
+    private final boolean lightEmitting = lavaData.getLightEmission() > 0;
+    
+    // Chunk grid covering the arena. Replaced as a whole by ensureGrid and only read by writeChunk, so region
+    // threads never see a grid whose bounds and arrays do not belong together.
+    private volatile Grid grid = Grid.EMPTY;
+    
+    private LavaRules rules = new LavaRules(EnumSet.of(Material.AIR, Material.WATER), false);
+    private LavaFillPlan plan;
+    private boolean verifyPlan = true;
+    private BlockWriteBackend backend = new BukkitBlockWriteBackend();
+    private ChangeJournal journal;
+    
+    // One layer of one chunk holds at most 256 positions, so each thread reuses one buffer for every chunk
+    private static final ThreadLocal<long[]> POSITIONS = ThreadLocal.withInitial(() -> new long[256]);
+    
+    // The planned layer of the chunk being written, copied out of the plan
+    private static final ThreadLocal<long[]> PLANNED = ThreadLocal.withInitial(() -> new long[4]);
+    
+    // Counters for the whole match
+    private final LongAdder totalExamined = new LongAdder();
+    private final LongAdder totalWritten = new LongAdder();
+    private final LongAdder totalChunksSkipped = new LongAdder();
+    private final LongAdder backendNanos = new LongAdder();
+    
+    public void reset() {
+        grid = Grid.EMPTY;
+        totalExamined.reset();
+        totalWritten.reset();
+        totalChunksSkipped.reset();
+        backendNanos.reset();
+        plan = null;
+        journal = null;
+    }
+    
+    public void setRules(LavaRules rules) {
+        this.rules = rules;
+    }
+    
+    public LavaRules getRules() {
+        return rules;
+    }
+    
+    public void setBackend(BlockWriteBackend backend) {
+        this.backend = backend;
+    }
+    
+    public BlockWriteBackend getBackend() {
+        return backend;
+    }
+    
+    // Original states of everything this writer replaces are recorded here so the arena can be restored
+    public void setJournal(ChangeJournal journal) {
+        this.journal = journal;
+    }
+    
+    public void setPlan(LavaFillPlan plan, boolean verifyPlan) {
+        this.plan = plan;
+        this.verifyPlan = verifyPlan;
+    }
+    
+    public LavaFillPlan getPlan() {
+        return plan;
+    }
+    
+    // Writes a whole layer on the calling thread; on Folia the placement scheduler splits layers by region instead
+    public void writeLayer(World world, int minX, int minZ, int maxX, int maxZ, int y) {
+        ensureGrid(minX >> 4, minZ >> 4, maxX >> 4, maxZ >> 4);
+        for (int cx = minX >> 4; cx <= maxX >> 4; cx++) {
+            for (int cz = minZ >> 4; cz <= maxZ >> 4; cz++) {
+                writeChunk(world, cx, cz, minX, minZ, maxX, maxZ, y);
+            }
+        }
+    }
+    
+    // Fills the part of layer y that lies in chunk (cx, cz) and the given bounds. Returns the blocks examined
+    // and written as one value (see examined and written), or SKIPPED when the chunk was not examined.
+    // Must run on the thread owning the chunk, after ensureGrid has covered the layer.
+    public long writeChunk(World world, int cx, int cz, int minX, int minZ, int maxX, int maxZ, int y) {
+        if (y < world.getMinHeight() || y >= world.getMaxHeight()) {
+            return SKIPPED;
+        }
+        
+        Grid grid = this.grid;
+        int index = grid.indexOf(cx, cz);
+        // Only after a reset, when the layer this chunk belongs to has been cancelled
+        if (index < 0) {
+            return SKIPPED;
+        }
+        int[] sectionY = grid.sectionY;
+        byte[] sectionState = grid.sectionState;
+        int[] lastLayerY = grid.lastLayerY;
+        int[] lastLayerWrites = grid.lastLayerWrites;
+        int section = y >> 4;
+        
+        // A layer already written here is only written again after a block in it changed (see markDirty)
+        if (lastLayerY[index] == y) {
+            totalChunksSkipped.increment();
+            return SKIPPED;
+        }
+        
+        long[] planned = PLANNED.get();
+        if (plan != null && plan.copyLayer(cx, cz, y, planned)) {
+            long result = replayPlan(world, planned, cx, cz, minX, minZ, maxX, maxZ, y);
+            lastLayerY[index] = y;
+            lastLayerWrites[index] = written(result);
+            return result;
+        }
+        
+        if (sectionY[index] != section) {
+            sectionY[index] = section;
+            sectionState[index] = classifySection(world, cx, cz, section, lastLayerWrites[index]);
+        }
+        
+        if (sectionState[index] == SECTION_CLOSED) {
+            lastLayerY[index] = y;
+            lastLayerWrites[index] = 0;
+            totalChunksSkipped.increment();
+            return SKIPPED;
+        }
+        
+        int fromX = Math.max(minX, cx << 4);
+        int toX = Math.min(maxX, (cx << 4) + 15);
+        int fromZ = Math.max(minZ, cz << 4);
+        int toZ = Math.min(maxZ, (cz << 4) + 15);
+        
+        int written;
+        if (journal != null) {
+            written = fillJournaled(world, fromX, fromZ, toX, toZ, y);
+        } else {
+            long start = System.nanoTime();
+            written = backend.fillLayer(world, fromX, fromZ, toX, toZ, y, lavaData, rules, !rules.isStaticLava());
+            backendNanos.add(System.nanoTime() - start);
+        }
+        
+        int examined = (toX - fromX + 1) * (toZ - fromZ + 1);
+        totalExamined.add(examined);
+        totalWritten.add(written);
+        lastLayerY[index] = y;
+        lastLayerWrites[index] = written;
+        return result(examined, written);
+    }
+    
+    private static long result(int examined, int written) {
+        return ((long) examined << 32) | written;
+    }
+    
+    public static int examined(long result) {
+        return result == SKIPPED ? 0 : (int) (result >>> 32);
+    }
+    
+    public static int written(long result) {
+        return result == SKIPPED ? 0 : (int) result;
+    }
+    
+    // Walks the set bits of a planned layer instead of reading every column
+    private long replayPlan(World world, long[] planned, int cx, int cz, int minX, int minZ, int maxX, int maxZ, int y) {
+        long[] positions = POSITIONS.get();
+        int examined = 0;
+        int count = 0;
+        
+        for (int w = 0; w < 4; w++) {
+            long word = planned[w];
+            while (word != 0) {
+                int bit = (w << 6) | Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                int x = (cx << 4) | (bit & 15);
+                int z = (cz << 4) | (bit >> 4);
+                if (x < minX || x > maxX || z < minZ || z > maxZ) {
+                    continue;
+                }
+                
+                examined++;
+                plan.update(x, y, z, false);
+                if (verifyPlan && !rules.isReplaceable(world.getType(x, y, z))) {
+                    continue;
+                }
+                if (journal != null) {
+                    journal.record(x, y, z, world.getBlockData(x, y, z));
+                }
+                positions[count++] = BlockWriteBackend.pack(x, y, z);
+            }
+        }
+        
+        int written = writePositions(world, positions, count);
+        totalExamined.add(examined);
+        totalWritten.add(written);
+        return result(examined, written);
+    }
+    
+    // Live fill that decides on the block type and only reads the full block data of what it replaces, so
+    // solid blocks cost no allocation
+    private int fillJournaled(World world, int fromX, int fromZ, int toX, int toZ, int y) {
+        long[] positions = POSITIONS.get();
+        int count = 0;
+        for (int x = fromX; x <= toX; x++) {
+            for (int z = fromZ; z <= toZ; z++) {
+                if (rules.isReplaceable(world.getType(x, y, z))) {
+                    journal.record(x, y, z, world.getBlockData(x, y, z));
+                    positions[count++] = BlockWriteBackend.pack(x, y, z);
+                }
+            }
+        }
+        return writePositions(world, positions, count);
+    }
+    
+    private int writePositions(World world, long[] positions, int count) {
+        if (count == 0) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        int written = backend.write(world, positions, count, lavaData, !rules.isStaticLava());
+        backendNanos.add(System.nanoTime() - start);
+        return written;
+    }
+    
+    // Called when a block inside the arena is about to change, with whether it will be able to take lava afterwards
+    public void blockChanged(int x, int y, int z, boolean replaceable) {
+        if (plan != null) {
+            plan.update(x, y, z, replaceable);
+        }
+        if (replaceable) {
+            markDirty(x, y, z);
+        }
+    }
+    
+    // Called when a block inside the arena changes, so cached section states are no longer trusted
+    private void markDirty(int x, int y, int z) {
+        Grid grid = this.grid;
+        int index = grid.indexOf(x >> 4, z >> 4);
+        if (index < 0) {
+            return;
+        }
+        
+        if (grid.sectionY[index] == y >> 4) {
+            grid.sectionState[index] = SECTION_MIXED;
+        }
+        if (grid.lastLayerY[index] == y) {
+            grid.lastLayerY[index] = Integer.MIN_VALUE;
+        }
+    }
+    
+    private byte classifySection(World world, int cx, int cz, int section, int previousWrites) {
+        // Chunks that took lava on the previous layer almost always have room on this one,
+        // so only pay for a snapshot where the section is likely to be solid
+        if (previousWrites > 0) {
+            return SECTION_MIXED;
+        }
+        
+        Chunk chunk = world.getChunkAt(cx, cz);
+        ChunkSnapshot snapshot = chunk.getChunkSnapshot(false, false, false);
+        int sectionIndex = section - (world.getMinHeight() >> 4);
+        if (snapshot.isSectionEmpty(sectionIndex)) {
+            return SECTION_MIXED;
+        }
+        
+        int baseY = section << 4;
+        int topY = Math.min(baseY + 15, world.getMaxHeight() - 1);
+        for (int y = baseY; y <= topY; y++) {
+            for (int x = 0; x < 16; x++) {
+                for (int z = 0; z < 16; z++) {
+                    if (rules.isReplaceable(snapshot.getBlockType(x, y, z))) {
+                        return SECTION_MIXED;
+                    }
+                }
+            }
+        }
+        return SECTION_CLOSED;
+    }
+    
+    // Called once per layer when it is queued, before any chunk of it is written. A grid that has to grow also
+    // keeps covering the old bounds, so layers queued earlier and still being written stay inside it.
+    public void ensureGrid(int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ) {
+        Grid current = grid;
+        // The border only ever shrinks during a match, so the first grid normally covers every later layer
+        if (current.covers(minChunkX, minChunkZ, maxChunkX, maxChunkZ)) {
+            return;
+        }
+        
+        if (current != Grid.EMPTY) {
+            minChunkX = Math.min(minChunkX, current.originChunkX);
+            minChunkZ = Math.min(minChunkZ, current.originChunkZ);
+            maxChunkX = Math.max(maxChunkX, current.originChunkX + current.width - 1);
+            maxChunkZ = Math.max(maxChunkZ, current.originChunkZ + current.depth - 1);
+        }
+        grid = new Grid(minChunkX, minChunkZ, maxChunkX - minChunkX + 1, maxChunkZ - minChunkZ + 1);
+    }
+    
+    // Throughput of the write backend alone, so backends can be compared on the same workload
+    public long getBlocksPerSecond() {
+        long nanos = backendNanos.sum();
+        return nanos == 0 ? 0 : totalWritten.sum() * 1_000_000_000L / nanos;
+    }
+    
+    public boolean isLightEmitting() {
+        return lightEmitting;
+    }
+    
+    public long getTotalExamined() {
+        return totalExamined.sum();
+    }
+    
+    public long getTotalWritten() {
+        return totalWritten.sum();
+    }
+    
+    public long getTotalChunksSkipped() {
+        return totalChunksSkipped.sum();
+    }
+    
+    // Per-chunk caches indexed by (cx - originChunkX) * depth + (cz - originChunkZ). Each chunk's slots are only
+    // written by the thread owning the chunk; the bounds never change once the grid is published.
+    private static final class Grid {
+        
+        private static final Grid EMPTY = new Grid(0, 0, 0, 0);
+        
+        private final int originChunkX;
+        private final int originChunkZ;
+        private final int width;
+        private final int depth;
+        private final int[] sectionY;
+        private final byte[] sectionState;
+        private final int[] lastLayerY;
+        private final int[] lastLayerWrites;
+        
+        private Grid(int originChunkX, int originChunkZ, int width, int depth) {
+            this.originChunkX = originChunkX;
+            this.originChunkZ = originChunkZ;
+            this.width = width;
+            this.depth = depth;
+            int size = width * depth;
+            this.sectionY = new int[size];
+            this.sectionState = new byte[size];
+            this.lastLayerY = new int[size];
+            this.lastLayerWrites = new int[size];
+            Arrays.fill(sectionY, Integer.MIN_VALUE);
+            Arrays.fill(sectionState, SECTION_UNKNOWN);
+            Arrays.fill(lastLayerY, Integer.MIN_VALUE);
+        }
+        
+        private boolean covers(int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ) {
+            return indexOf(minChunkX, minChunkZ) >= 0 && indexOf(maxChunkX, maxChunkZ) >= 0;
+        }
+        
+        private int indexOf(int cx, int cz) {
+            int dx = cx - originChunkX;
+            int dz = cz - originChunkZ;
+            if (dx < 0 || dz < 0 || dx >= width || dz >= depth) {
+                return -1;
+            }
+            return dx * depth + dz;
+        }
+    }
+}
@@ -0,0 +1,447 @@
+package me.mcb.lavaevent.lava;
+
+import me.mcb.lavaevent.MCBLavaEventPlugin;
+import me.mcb.lavaevent.game.PlayerGrid;
+import me.mcb.lavaevent.utils.TaskScheduler;
+import org.bukkit.World;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+
+public class LavaPlacementScheduler {
+    
+    private static final int LIGHT_WINDOW_TICKS = 20;
+    
+    // Folia groups chunks into regions made of 16x16-chunk sections (its default grid exponent of 4),
+    // so every chunk of one such group is always owned by the same region thread
+    private static final int REGION_SECTION_SHIFT = 4;
+    private static final long TICK_NANOS = 50_000_000L;
+    
+    // Per region thread: when its current tick window started and the deadline for lava work in it
+    private static final ThreadLocal<long[]> REGION_BUDGET = ThreadLocal.withInitial(() -> new long[2]);
+    
+    private final MCBLavaEventPlugin plugin;
+    private final LavaLayerWriter writer;
+    private final TaskScheduler taskScheduler;
+    private final ArrayDeque<LayerJob> pendingLayers = new ArrayDeque<>();
+    
+    // Nearest-player result while ordering a layer on the global region
+    private final int[] nearest = new int[1];
+    
+    private volatile World world;
+    private boolean warnedBehind = false;
+    
+    // Told the Y of every layer once all of its chunks are written, on the global region
+    private IntConsumer layerListener = y -> { };
+    
+    // Light work issued by lava writes, per tick and over the last second.
+    // Region threads add to the per-tick counts, the global tick moves them into the window.
+    private int lightSectionBudget;
+    private final AtomicInteger tickLightSections = new AtomicInteger();
+    private final AtomicInteger tickLightWrites = new AtomicInteger();
+    private final int[] lightWritesRing = new int[LIGHT_WINDOW_TICKS];
+    private final int[] lightSectionsRing = new int[LIGHT_WINDOW_TICKS];
+    private int windowLightWrites;
+    private int windowLightSections;
+    private long tickCounter;
+    private long totalLightWrites;
+    private long totalLightSections;
+    private long lightDeferredTicks;
+    
+    // Stats of the most recently completed layer
+    private int lastLayerY = Integer.MIN_VALUE;
+    private long lastLayerExamined;
+    private long lastLayerWritten;
+    private long lastLayerNanos;
+    private int lastLayerTicks;
+    
+    public LavaPlacementScheduler(MCBLavaEventPlugin plugin, LavaLayerWriter writer) {
+        this.plugin = plugin;
+        this.writer = writer;
+        this.taskScheduler = plugin.getTaskScheduler();
+    }
+    
+    public void setLayerListener(IntConsumer layerListener) {
+        this.layerListener = layerListener;
+    }
+    
+    // The arena manager drives every running scheduler from one task that shares the tick budget between arenas
+    public void start(World world) {
+        stop();
+        this.world = world;
+    }
+    
+    public void stop() {
+        world = null;
+        for (LayerJob job : pendingLayers) {
+            job.cancelled = true;
+        }
+        pendingLayers.clear();
+        warnedBehind = false;
+        lastLayerY = Integer.MIN_VALUE;
+        lastLayerExamined = 0;
+        lastLayerWritten = 0;
+        lastLayerNanos = 0;
+        lastLayerTicks = 0;
+        Arrays.fill(lightWritesRing, 0);
+        Arrays.fill(lightSectionsRing, 0);
+        windowLightWrites = 0;
+        windowLightSections = 0;
+        totalLightWrites = 0;
+        totalLightSections = 0;
+        lightDeferredTicks = 0;
+    }
+    
+    // Queues layer y inside the given bounds, ordering its chunks by distance to the nearest alive player
+    public void queueLayer(int minX, int minZ, int maxX, int maxZ, int y, PlayerGrid players) {
+        // Each layer is normally queued once; a repeated request for a layer that has not started is dropped
+        LayerJob last = pendingLayers.peekLast();
+        if (last != null && last.y == y && last.done.get() == 0) {
+            return;
+        }
+        
+        int minChunkX = minX >> 4;
+        int minChunkZ = minZ >> 4;
+        int depth = (maxZ >> 4) - minChunkZ + 1;
+        int count = ((maxX >> 4) - minChunkX + 1) * depth;
+        
+        int priorityRadius = Math.max(0, plugin.getConfigManager().getLavaPriorityRadius() >> 4);
+        long priorityRadiusSquared = (long) priorityRadius * priorityRadius;
+        
+        // Pack (distance, chunk offset) into one long so a primitive sort gives the processing order
+        long[] order = new long[count];
+        int priorityCount = 0;
+        for (int i = 0; i < count; i++) {
+            int cx = minChunkX + i / depth;
+            int cz = minChunkZ + i % depth;
+            long distance = nearestDistanceSquared(players, cx, cz);
+            if (distance <= priorityRadiusSquared) {
+                priorityCount++;
+            }
+            order[i] = (Math.min(distance, Integer.MAX_VALUE) << 32) | i;
+        }
+        Arrays.sort(order);
+        
+        // The writer's grid is published here, once per layer, so region threads only ever read it
+        writer.ensureGrid(minChunkX, minChunkZ, maxX >> 4, maxZ >> 4);
+        pendingLayers.addLast(new LayerJob(y, minX, minZ, maxX, maxZ, minChunkX, minChunkZ, depth, order, priorityCount));
+        checkBacklog();
+    }
+    
+    // Places queued lava until the deadline (System.nanoTime) passes. On Folia this only hands the
+    // head layer to the region threads and completes it once all of them have finished their part.
+    public void tick(long deadline) {
+        if (!pendingLayers.isEmpty() && world != null) {
+            if (TaskScheduler.isFolia()) {
+                runRegions();
+            } else {
+                runQueue(deadline);
+            }
+        }
+        
+        // Keep a one-second window of the light work this plugin has handed to the lighting engine
+        int writes = tickLightWrites.getAndSet(0);
+        int sections = tickLightSections.getAndSet(0);
+        totalLightWrites += writes;
+        totalLightSections += sections;
+        int slot = (int) (tickCounter++ % LIGHT_WINDOW_TICKS);
+        windowLightWrites += writes - lightWritesRing[slot];
+        windowLightSections += sections - lightSectionsRing[slot];
+        lightWritesRing[slot] = writes;
+        lightSectionsRing[slot] = sections;
+    }
+    
+    private void runQueue(long deadline) {
+        lightSectionBudget = plugin.getConfigManager().getLightSectionsPerTick();
+        
+        // Chunks near players come first for every queued layer, in layer order, so the surface
+        // players can see stays correct even while distant chunks are still catching up
+        for (LayerJob job : pendingLayers) {
+            while (job.cursor < job.priorityCount && hasBudget(deadline)) {
+                process(job);
+            }
+            if (!hasBudget(deadline)) {
+                break;
+            }
+        }
+        
+        LayerJob head = pendingLayers.peekFirst();
+        while (head != null && hasBudget(deadline)) {
+            if (head.cursor < head.order.length) {
+                process(head);
+            }
+            if (head.cursor >= head.order.length) {
+                completeLayer(pendingLayers.pollFirst());
+                head = pendingLayers.peekFirst();
+            }
+        }
+        
+        writer.getBackend().flush();
+        
+        if (lightSectionBudget > 0 && tickLightSections.get() >= lightSectionBudget && getPendingChunks() > 0) {
+            lightDeferredTicks++;
+        }
+        
+        for (LayerJob job : pendingLayers) {
+            job.ticks++;
+        }
+    }
+    
+    // Each chunk write relights one section, so capping sections per tick caps the relighting we queue
+    private boolean hasBudget(long deadline) {
+        if (lightSectionBudget > 0 && tickLightSections.get() >= lightSectionBudget) {
+            return false;
+        }
+        return System.nanoTime() < deadline;
+    }
+    
+    private void process(LayerJob job) {
+        writeChunk(job, world, (int) job.order[job.cursor++]);
+    }
+    
+    // Writes one chunk of the layer; on Folia this runs on the region thread owning the chunk
+    private void writeChunk(LayerJob job, World world, int offset) {
+        int cx = job.minChunkX + offset / job.depth;
+        int cz = job.minChunkZ + offset % job.depth;
+        
+        long start = System.nanoTime();
+        long result = writer.writeChunk(world, cx, cz, job.minX, job.minZ, job.maxX, job.maxZ, job.y);
+        job.nanos.add(System.nanoTime() - start);
+        job.done.incrementAndGet();
+        job.examined.add(LavaLayerWriter.examined(result));
+        int written = LavaLayerWriter.written(result);
+        if (written > 0) {
+            job.written.add(written);
+            if (writer.isLightEmitting()) {
+                tickLightSections.incrementAndGet();
+                tickLightWrites.addAndGet(written);
+            }
+        }
+    }
+    
+    // Folia: the head layer is split into region groups that each write their chunks on their own thread.
+    // Layers go out one at a time and the next one only once every group of the previous one has finished.
+    private void runRegions() {
+        LayerJob head = pendingLayers.peekFirst();
+        while (head != null) {
+            if (head.remainingGroups == null) {
+                dispatch(head);
+            }
+            if (head.remainingGroups.get() > 0) {
+                break;
+            }
+            completeLayer(pendingLayers.pollFirst());
+            head = pendingLayers.peekFirst();
+        }
+        
+        for (LayerJob job : pendingLayers) {
+            job.ticks++;
+        }
+    }
+    
+    private void dispatch(LayerJob job) {
+        // Chunks keep their distance order inside each group, so every region still starts near players
+        Map<Long, List<Integer>> groups = new LinkedHashMap<>();
+        for (long packed : job.order) {
+            int offset = (int) packed;
+            int cx = job.minChunkX + offset / job.depth;
+            int cz = job.minChunkZ + offset % job.depth;
+            long key = ((long) (cx >> REGION_SECTION_SHIFT) << 32) | ((cz >> REGION_SECTION_SHIFT) & 0xFFFFFFFFL);
+            groups.computeIfAbsent(key, k -> new ArrayList<>()).add(offset);
+        }
+        
+        job.remainingGroups = new AtomicInteger(groups.size());
+        World target = world;
+        for (List<Integer> group : groups.values()) {
+            int[] offsets = group.stream().mapToInt(Integer::intValue).toArray();
+            int cx = job.minChunkX + offsets[0] / job.depth;
+            int cz = job.minChunkZ + offsets[0] % job.depth;
+            taskScheduler.runAt(target, cx, cz, () -> runGroup(job, target, offsets, 0));
+        }
+    }
+    
+    // Runs on the region thread owning the group. Writes at least one chunk per run, stops at the
+    // region's share of the tick budget and continues on the region's next tick.
+    private void runGroup(LayerJob job, World target, int[] offsets, int from) {
+        if (job.cancelled) {
+            return;
+        }
+        
+        long deadline = regionDeadline();
+        int next = from;
+        do {
+            writeChunk(job, target, offsets[next++]);
+        } while (next < offsets.length && System.nanoTime() < deadline);
+        writer.getBackend().flush();
+        
+        if (next < offsets.length) {
+            int resume = next;
+            int cx = job.minChunkX + offsets[resume] / job.depth;
+            int cz = job.minChunkZ + offsets[resume] % job.depth;
+            taskScheduler.runAtLater(target, cx, cz, task -> runGroup(job, target, offsets, resume), 1L);
+        } else {
+            job.remainingGroups.decrementAndGet();
+        }
+    }
+    
+    // The lava tick budget applies to each region thread separately, shared by all groups and arenas it runs
+    private long regionDeadline() {
+        long[] budget = REGION_BUDGET.get();
+        long now = System.nanoTime();
+        if (now - budget[0] >= TICK_NANOS) {
+            budget[0] = now;
+            budget[1] = now + (long) (plugin.getConfigManager().getSnapshot().lavaPlacement().tickBudgetMs() * 1_000_000L);
+        }
+        return budget[1];
+    }
+    
+    private void completeLayer(LayerJob job) {
+        lastLayerY = job.y;
+        lastLayerExamined = job.examined.sum();
+        lastLayerWritten = job.written.sum();
+        lastLayerNanos = job.nanos.sum();
+        lastLayerTicks = job.ticks + 1;
+        
+        if (plugin.getConfigManager().getSnapshot().showLavaUpdates()) {
+            plugin.getLogger().info("Lava layer Y=" + job.y + ": examined " + lastLayerExamined
+                + ", written " + lastLayerWritten
+                + " in " + (lastLayerNanos / 1_000_000.0) + " ms over " + lastLayerTicks + " ticks");
+        }
+        
+        checkBacklog();
+        layerListener.accept(job.y);
+    }
+    
+    private void checkBacklog() {
+        int warningLayers = plugin.getConfigManager().getSnapshot().lavaPlacement().backlogWarningLayers();
+        if (warningLayers <= 0) {
+            return;
+        }
+        
+        if (pendingLayers.size() > warningLayers) {
+            if (!warnedBehind) {
+                warnedBehind = true;
+                plugin.getLogger().warning("Lava placement is falling behind lava-rise-speed: " + pendingLayers.size()
+                    + " layers (" + getPendingChunks() + " chunks) are still queued");
+            }
+        } else if (pendingLayers.size() <= 1) {
+            warnedBehind = false;
+        }
+    }
+    
+    // Squared distance in chunks from chunk (cx, cz) to the chunk of the nearest alive player
+    private long nearestDistanceSquared(PlayerGrid players, int cx, int cz) {
+        if (players.nearest((cx << 4) + 8, (cz << 4) + 8, Double.POSITIVE_INFINITY, nearest) == 0) {
+            return Long.MAX_VALUE;
+        }
+        
+        long dx = ((int) Math.floor(players.getX(nearest[0])) >> 4) - cx;
+        long dz = ((int) Math.floor(players.getZ(nearest[0])) >> 4) - cz;
+        return dx * dx + dz * dz;
+    }
+    
+    public boolean isRunning() {
+        return world != null;
+    }
+    
+    public int getPendingLayers() {
+        return pendingLayers.size();
+    }
+    
+    public int getPendingChunks() {
+        int pending = 0;
+        for (LayerJob job : pendingLayers) {
+            pending += job.order.length - job.done.get();
+        }
+        return pending;
+    }
+    
+    public boolean isBehind() {
+        return pendingLayers.size() > 1;
+    }
+    
+    public int getLightWritesPerSecond() {
+        return windowLightWrites;
+    }
+    
+    public int getLightSectionsPerSecond() {
+        return windowLightSections;
+    }
+    
+    public long getTotalLightWrites() {
+        return totalLightWrites;
+    }
+    
+    public long getTotalLightSections() {
+        return totalLightSections;
+    }
+    
+    public long getLightDeferredTicks() {
+        return lightDeferredTicks;
+    }
+    
+    public int getLastLayerY() {
+        return lastLayerY;
+    }
+    
+    public long getLastLayerExamined() {
+        return lastLayerExamined;
+    }
+    
+    public long getLastLayerWritten() {
+        return lastLayerWritten;
+    }
+    
+    public long getLastLayerNanos() {
+        return lastLayerNanos;
+    }
+    
+    public int getLastLayerTicks() {
+        return lastLayerTicks;
+    }
+    
+    private static class LayerJob {
+        private final int y;
+        private final int minX;
+        private final int minZ;
+        private final int maxX;
+        private final int maxZ;
+        private final int minChunkX;
+        private final int minChunkZ;
+        private final int depth;
+        private final long[] order;
+        private final int priorityCount;
+        
+        // Paper walks the order with cursor on the main thread; on Folia region threads report through
+        // the shared counters and remainingGroups is the barrier that tells when the layer is done
+        private int cursor;
+        private final AtomicInteger done = new AtomicInteger();
+        private final LongAdder examined = new LongAdder();
+        private final LongAdder written = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private int ticks;
+        private AtomicInteger remainingGroups;
+        private volatile boolean cancelled;
+        
+        private LayerJob(int y, int minX, int minZ, int maxX, int maxZ,
+                         int minChunkX, int minChunkZ, int depth, long[] order, int priorityCount) {
+            this.y = y;
+            this.minX = minX;
+            this.minZ = minZ;
+            this.maxX = maxX;
+            this.maxZ = maxZ;
+            this.minChunkX = minChunkX;
+            this.minChunkZ = minChunkZ;
+            this.depth = depth;
+            this.order = order;
+            this.priorityCount = priorityCount;
+        }
+    }
+}
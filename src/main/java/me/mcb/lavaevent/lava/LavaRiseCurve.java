@@ -0,0 +1,123 @@
+package me.mcb.lavaevent.lava;
+
+import me.mcb.lavaevent.MCBLavaEventPlugin;
+import me.mcb.lavaevent.config.ConfigSnapshot;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.function.DoubleUnaryOperator;
+
+// The lava level for every tick of the rise, worked out once when the lava starts rising so the
+// game loop only has to look it up. Index 0 is the starting level.
+public class LavaRiseCurve {
+    
+    // A rise longer than four hours stops where it is
+    private static final int MAX_TICKS = 20 * 60 * 60 * 4;
+    
+    private final float[] levels;
+    
+    private LavaRiseCurve(float[] levels) {
+        this.levels = levels;
+    }
+    
+    public static LavaRiseCurve fromConfig(MCBLavaEventPlugin plugin, double startLevel, double maxLevel) {
+        ConfigSnapshot config = plugin.getConfigManager().getSnapshot();
+        double speed = config.game().lavaRiseSpeed();
+        String curve = config.lavaRise().curve();
+        if (speed <= 0 && !curve.equals("piecewise")) {
+            return new LavaRiseCurve(new float[] {(float) startLevel});
+        }
+        
+        switch (curve) {
+            case "linear":
+                return tabulate(startLevel, maxLevel, seconds -> startLevel + speed * seconds);
+            case "ease-in": {
+                // Quadratic, arriving at the top at the same time as a linear rise would
+                double duration = (maxLevel - startLevel) / speed;
+                return tabulate(startLevel, maxLevel, seconds -> {
+                    double progress = seconds / duration;
+                    return startLevel + (maxLevel - startLevel) * progress * progress;
+                });
+            }
+            case "stepped": {
+                int step = config.lavaRise().stepSeconds();
+                return tabulate(startLevel, maxLevel, seconds -> startLevel + speed * step * Math.floor(seconds / step));
+            }
+            case "piecewise":
+                return piecewise(plugin, startLevel, maxLevel, speed, config.lavaRise().piecewise());
+            default:
+                plugin.getLogger().warning("Unknown lava-rise curve '" + curve + "', using linear");
+                return tabulate(startLevel, maxLevel, seconds -> startLevel + speed * seconds);
+        }
+    }
+    
+    // Integrates the speed that applies at each tick; before the first listed time the base speed applies
+    private static LavaRiseCurve piecewise(MCBLavaEventPlugin plugin, double startLevel, double maxLevel, double speed,
+                                           NavigableMap<Integer, Double> speeds) {
+        if (speeds.isEmpty()) {
+            plugin.getLogger().warning("lava-rise.piecewise has no entries, using a linear rise");
+        }
+        
+        float[] table = new float[64];
+        double level = startLevel;
+        int count = 0;
+        while (true) {
+            if (count == table.length) {
+                table = Arrays.copyOf(table, table.length * 2);
+            }
+            table[count++] = (float) Math.min(level, maxLevel);
+            if (level >= maxLevel || count >= MAX_TICKS) {
+                break;
+            }
+            int second = (count - 1) / 20;
+            Map.Entry<Integer, Double> entry = speeds.floorEntry(second);
+            double current = entry != null ? entry.getValue() : speed;
+            // A speed of zero with nothing listed after it would never reach the top
+            if (current <= 0 && speeds.higherKey(second) == null) {
+                break;
+            }
+            level += current / 20.0;
+        }
+        return new LavaRiseCurve(Arrays.copyOf(table, count));
+    }
+    
+    private static LavaRiseCurve tabulate(double startLevel, double maxLevel, DoubleUnaryOperator levelAt) {
+        float[] table = new float[64];
+        int count = 0;
+        while (true) {
+            if (count == table.length) {
+                table = Arrays.copyOf(table, table.length * 2);
+            }
+            double level = Math.min(levelAt.applyAsDouble(count / 20.0), maxLevel);
+            table[count++] = (float) level;
+            if (level >= maxLevel || count >= MAX_TICKS) {
+                break;
+            }
+        }
+        return new LavaRiseCurve(Arrays.copyOf(table, count));
+    }
+    
+    // The level after the given number of rising ticks; past the end of the table the level stays put
+    public double getLevel(int tick) {
+        return levels[Math.min(tick, levels.length - 1)];
+    }
+    
+    // The first tick after the given one at which the level reaches y, or -1 if the rise stops below it
+    public int getTickReaching(int y, int after) {
+        for (int tick = after + 1; tick < levels.length; tick++) {
+            if (levels[tick] >= y) {
+                return tick;
+            }
+        }
+        return -1;
+    }
+    
+    public boolean isFinished(int tick) {
+        return tick >= levels.length - 1;
+    }
+    
+    public int getTicks() {
+        return levels.length;
+    }
+}
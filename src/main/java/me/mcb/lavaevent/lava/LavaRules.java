@@ -0,0 +1,40 @@
+package me.mcb.lavaevent.lava;
+
+import me.mcb.lavaevent.MCBLavaEventPlugin;
+import me.mcb.lavaevent.config.ConfigSnapshot;
+import org.bukkit.Material;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+// Decides which blocks lava replaces and whether placed lava is left static.
+// Immutable once built, so worker threads can share it.
+public class LavaRules {
+    
+    private final Set<Material> replaceable;
+    private final boolean staticLava;
+    
+    public LavaRules(Set<Material> replaceable, boolean staticLava) {
+        this.replaceable = replaceable.isEmpty() ? EnumSet.noneOf(Material.class) : EnumSet.copyOf(replaceable);
+        this.staticLava = staticLava;
+    }
+    
+    // The block names were resolved and checked when the config was loaded
+    public static LavaRules fromConfig(MCBLavaEventPlugin plugin) {
+        ConfigSnapshot.StaticLava settings = plugin.getConfigManager().getSnapshot().staticLava();
+        return new LavaRules(settings.replaceable(), settings.enabled());
+    }
+    
+    public boolean isReplaceable(Material type) {
+        return replaceable.contains(type);
+    }
+    
+    public Set<Material> getReplaceable() {
+        return Collections.unmodifiableSet(replaceable);
+    }
+    
+    public boolean isStaticLava() {
+        return staticLava;
+    }
+}
@@ -0,0 +1,58 @@
+package me.mcb.lavaevent.lava;
+
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Keeps writes in memory instead of touching the world. Used for dry runs and tests.
+public class MemoryBlockWriteBackend implements BlockWriteBackend {
+    
+    // Concurrent because region threads write to it at the same time on Folia
+    private final Map<Long, BlockData> blocks = new ConcurrentHashMap<>();
+    
+    @Override
+    public String getName() {
+        return "memory";
+    }
+    
+    @Override
+    public int write(World world, long[] positions, int count, BlockData data, boolean applyPhysics) {
+        for (int i = 0; i < count; i++) {
+            blocks.put(positions[i], data);
+        }
+        return count;
+    }
+    
+    @Override
+    public int fillLayer(World world, int minX, int minZ, int maxX, int maxZ, int y, BlockData data, LavaRules rules, boolean applyPhysics) {
+        int written = 0;
+        for (int x = minX; x <= maxX; x++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                long packed = BlockWriteBackend.pack(x, y, z);
+                BlockData current = blocks.get(packed);
+                boolean replaceable = current != null
+                    ? rules.isReplaceable(current.getMaterial())
+                    : world == null || rules.isReplaceable(world.getType(x, y, z));
+                if (replaceable) {
+                    blocks.put(packed, data);
+                    written++;
+                }
+            }
+        }
+        return written;
+    }
+    
+    public BlockData getBlock(int x, int y, int z) {
+        return blocks.get(BlockWriteBackend.pack(x, y, z));
+    }
+    
+    public int size() {
+        return blocks.size();
+    }
+    
+    public void clear() {
+        blocks.clear();
+    }
+}
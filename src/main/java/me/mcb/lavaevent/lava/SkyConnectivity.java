@@ -0,0 +1,415 @@
+package me.mcb.lavaevent.lava;
+
+import me.mcb.lavaevent.MCBLavaEventPlugin;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+
+public class SkyConnectivity {
+    
+    // Shared by every section reached as a whole; reachable bits are only ever set, so it is never changed
+    private static final long[] ALL = new long[64];
+    
+    static {
+        Arrays.fill(ALL, -1L);
+    }
+    
+    private final MCBLavaEventPlugin plugin;
+    private final LavaFillPlan plan;
+    private final int minX;
+    private final int minZ;
+    private final int sizeX;
+    private final int sizeZ;
+    private final int minY;
+    private final int sizeY;
+    private final int depth;
+    private final int sectionCount;
+    
+    // Same layout as the fill plan: one 4096-bit set per section, null when nothing in it is set
+    private final long[][][] reachable;
+    private final long[][][] pruned;
+    private final int[] prunedPerLayer;
+    
+    // The plan as it was when the search started; the plan itself keeps changing on other threads meanwhile
+    private long[][][] frozen;
+    
+    // Until the result is applied only the search touches the bit sets. From then on region threads and the global
+    // region change them together with the plan, so everything below is guarded by the plan's lock.
+    private final List<Change> pending = new ArrayList<>();
+    private volatile boolean applied = false;
+    private volatile boolean cancelled = false;
+    private long searchNanos;
+    private long prunedTotal;
+    private long restoredTotal;
+    
+    public SkyConnectivity(MCBLavaEventPlugin plugin, LavaFillPlan plan) {
+        this.plugin = plugin;
+        this.plan = plan;
+        this.minX = plan.getMinChunkX() << 4;
+        this.minZ = plan.getMinChunkZ() << 4;
+        this.sizeX = plan.getWidth() << 4;
+        this.sizeZ = plan.getDepth() << 4;
+        this.minY = plan.getMinSection() << 4;
+        this.sizeY = plan.getSectionCount() << 4;
+        this.depth = plan.getDepth();
+        this.sectionCount = plan.getSectionCount();
+        this.reachable = new long[plan.getWidth() * plan.getDepth()][sectionCount][];
+        this.pruned = new long[plan.getWidth() * plan.getDepth()][sectionCount][];
+        this.prunedPerLayer = new int[sizeY];
+    }
+    
+    // Collects player seeds, searches on the worker pool and applies the result back on the global region (the main thread on Paper)
+    public void start(ExecutorService workerPool) {
+        int[] seeds = collectPlayerSeeds();
+        frozen = plan.copySections();
+        
+        workerPool.execute(() -> {
+            long start = System.nanoTime();
+            search(seeds);
+            searchNanos = System.nanoTime() - start;
+            
+            plugin.getTaskScheduler().run(() -> {
+                if (!cancelled) {
+                    apply();
+                }
+            });
+        });
+    }
+    
+    public void cancel() {
+        cancelled = true;
+    }
+    
+    // Runs on a worker thread over the frozen copy of the plan; changes made meanwhile are replayed by apply
+    private void search(int[] seeds) {
+        PositionStack stack = new PositionStack(4096);
+        int topY = sizeY - 1;
+        for (int x = 0; x < sizeX; x++) {
+            for (int z = 0; z < sizeZ; z++) {
+                visit(stack, x, topY, z);
+            }
+        }
+        for (int i = 0; i < seeds.length; i += 3) {
+            visit(stack, seeds[i], seeds[i + 1], seeds[i + 2]);
+        }
+        
+        while (!stack.isEmpty()) {
+            long packed = stack.pop();
+            int y = (int) (packed / ((long) sizeX * sizeZ));
+            long rest = packed - y * (long) sizeX * sizeZ;
+            int x = (int) (rest / sizeZ);
+            int z = (int) (rest - (long) x * sizeZ);
+            visit(stack, x + 1, y, z);
+            visit(stack, x - 1, y, z);
+            visit(stack, x, y + 1, z);
+            visit(stack, x, y - 1, z);
+            visit(stack, x, y, z + 1);
+            visit(stack, x, y, z - 1);
+        }
+        frozen = null;
+    }
+    
+    // Marks (x, y, z) reachable if it can take lava and queues its neighbours. Coordinates are relative to the plan origin.
+    private void visit(PositionStack stack, int x, int y, int z) {
+        if (x < 0 || y < 0 || z < 0 || x >= sizeX || y >= sizeY || z >= sizeZ) {
+            return;
+        }
+        
+        int index = (x >> 4) * depth + (z >> 4);
+        int s = y >> 4;
+        long[] candidates = frozen[index] != null ? frozen[index][s] : null;
+        int bit = ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+        if (candidates == null || (candidates[bit >>> 6] & (1L << bit)) == 0) {
+            return;
+        }
+        
+        long[] reached = reachable[index][s];
+        if (reached != null && (reached[bit >>> 6] & (1L << bit)) != 0) {
+            return;
+        }
+        
+        // A section that is open everywhere is reached as a whole; only blocks on its faces need to spread further
+        if (reached == null && LavaFillPlan.isFull(candidates)) {
+            reachable[index][s] = ALL;
+            
+            int baseX = x & ~15;
+            int baseY = y & ~15;
+            int baseZ = z & ~15;
+            for (int a = 0; a < 16; a++) {
+                for (int b = 0; b < 16; b++) {
+                    push(stack, baseX, baseY + a, baseZ + b);
+                    push(stack, baseX + 15, baseY + a, baseZ + b);
+                    push(stack, baseX + a, baseY, baseZ + b);
+                    push(stack, baseX + a, baseY + 15, baseZ + b);
+                    push(stack, baseX + a, baseY + b, baseZ);
+                    push(stack, baseX + a, baseY + b, baseZ + 15);
+                }
+            }
+            return;
+        }
+        
+        if (reached == null) {
+            reached = new long[64];
+            reachable[index][s] = reached;
+        }
+        reached[bit >>> 6] |= 1L << bit;
+        push(stack, x, y, z);
+    }
+    
+    private void push(PositionStack stack, int x, int y, int z) {
+        if (x < 0 || y < 0 || z < 0 || x >= sizeX || y >= sizeY || z >= sizeZ) {
+            return;
+        }
+        stack.push(((long) y * sizeX + x) * sizeZ + z);
+    }
+    
+    // Runs on the main thread: removes unreachable candidates from the plan and remembers them as pruned, then
+    // replays the changes the search did not see. Holds the plan's lock throughout, so no update slips in between.
+    private void apply() {
+        synchronized (plan.lock) {
+            applyLocked();
+        }
+        plugin.getLogger().info("Sealed cave pruning removed " + getPrunedTotal() + " lava writes in "
+            + (searchNanos / 1_000_000) + " ms");
+    }
+    
+    private void applyLocked() {
+        for (int index = 0; index < reachable.length; index++) {
+            for (int s = 0; s < sectionCount; s++) {
+                long[] candidates = plan.getSection(index, s);
+                if (candidates == null || LavaFillPlan.isEmpty(candidates)) {
+                    continue;
+                }
+                
+                long[] reached = reachable[index][s];
+                int removedCount = 0;
+                for (int w = 0; w < 64; w++) {
+                    removedCount += Long.bitCount(candidates[w] & ~(reached != null ? reached[w] : 0L));
+                }
+                if (removedCount == 0) {
+                    continue;
+                }
+                
+                long[] kept = new long[64];
+                long[] removed = new long[64];
+                for (int w = 0; w < 64; w++) {
+                    long reachedWord = reached != null ? reached[w] : 0L;
+                    kept[w] = candidates[w] & reachedWord;
+                    removed[w] = candidates[w] & ~reachedWord;
+                    prunedPerLayer[(s << 4) + (w >> 2)] += Long.bitCount(removed[w]);
+                }
+                
+                plan.setSection(index, s, kept);
+                pruned[index][s] = removed;
+                prunedTotal += removedCount;
+            }
+        }
+        
+        applied = true;
+        for (Change change : pending) {
+            replay(change);
+        }
+        pending.clear();
+    }
+    
+    // Called by the plan, under its lock, for every block that changes. Returns whether the block should be a
+    // candidate; until the search result is applied the change is only remembered.
+    boolean changed(int x, int y, int z, boolean needsLava) {
+        synchronized (plan.lock) {
+            if (!applied) {
+                if (!cancelled) {
+                    pending.add(new Change(x, y, z, needsLava));
+                }
+                return needsLava;
+            }
+            return !needsLava || opened(x, y, z);
+        }
+    }
+    
+    // A block apply pruned from the live plan may have changed after the frozen copy was taken
+    private void replay(Change change) {
+        int rx = change.x() - minX;
+        int ry = change.y() - minY;
+        int rz = change.z() - minZ;
+        if (rx >= 0 && ry >= 0 && rz >= 0 && rx < sizeX && ry < sizeY && rz < sizeZ && getBit(pruned, rx, ry, rz)) {
+            setBit(pruned, rx, ry, rz, false);
+            prunedPerLayer[ry]--;
+            prunedTotal--;
+        }
+        plan.setCandidate(change.x(), change.y(), change.z(), change.needsLava() && opened(change.x(), change.y(), change.z()));
+    }
+    
+    // Called under the plan's lock once the result is applied, when the block at (x, y, z) is opened up. Returns
+    // whether lava can reach it; if it joins a reachable space, every pruned block connected to it is given back.
+    private boolean opened(int x, int y, int z) {
+        int rx = x - minX;
+        int ry = y - minY;
+        int rz = z - minZ;
+        if (rx < 0 || ry < 0 || rz < 0 || rx >= sizeX || ry >= sizeY || rz >= sizeZ) {
+            return true;
+        }
+        
+        if (!isReachable(rx + 1, ry, rz) && !isReachable(rx - 1, ry, rz)
+                && !isReachable(rx, ry + 1, rz) && !isReachable(rx, ry - 1, rz)
+                && !isReachable(rx, ry, rz + 1) && !isReachable(rx, ry, rz - 1)) {
+            setBit(pruned, rx, ry, rz, true);
+            prunedPerLayer[ry]++;
+            prunedTotal++;
+            return false;
+        }
+        
+        setBit(reachable, rx, ry, rz, true);
+        PositionStack stack = new PositionStack(256);
+        pushPruned(stack, rx, ry, rz);
+        
+        while (!stack.isEmpty()) {
+            long packed = stack.pop();
+            int py = (int) (packed / ((long) sizeX * sizeZ));
+            long rest = packed - py * (long) sizeX * sizeZ;
+            int px = (int) (rest / sizeZ);
+            int pz = (int) (rest - (long) px * sizeZ);
+            pushPruned(stack, px, py, pz);
+        }
+        return true;
+    }
+    
+    // Restores the pruned neighbours of (x, y, z) to the plan and queues them
+    private void pushPruned(PositionStack stack, int x, int y, int z) {
+        restore(stack, x + 1, y, z);
+        restore(stack, x - 1, y, z);
+        restore(stack, x, y + 1, z);
+        restore(stack, x, y - 1, z);
+        restore(stack, x, y, z + 1);
+        restore(stack, x, y, z - 1);
+    }
+    
+    private void restore(PositionStack stack, int x, int y, int z) {
+        if (x < 0 || y < 0 || z < 0 || x >= sizeX || y >= sizeY || z >= sizeZ || !getBit(pruned, x, y, z)) {
+            return;
+        }
+        
+        setBit(pruned, x, y, z, false);
+        setBit(reachable, x, y, z, true);
+        plan.setCandidate(x + minX, y + minY, z + minZ, true);
+        prunedPerLayer[y]--;
+        prunedTotal--;
+        restoredTotal++;
+        push(stack, x, y, z);
+    }
+    
+    private boolean isReachable(int x, int y, int z) {
+        // Anything above the planned range or outside the arena counts as open
+        if (x < 0 || y < 0 || z < 0 || x >= sizeX || y >= sizeY || z >= sizeZ) {
+            return true;
+        }
+        return getBit(reachable, x, y, z);
+    }
+    
+    private boolean getBit(long[][][] sets, int x, int y, int z) {
+        long[] bits = sets[(x >> 4) * depth + (z >> 4)][y >> 4];
+        int bit = ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+        return bits != null && (bits[bit >>> 6] & (1L << bit)) != 0;
+    }
+    
+    private void setBit(long[][][] sets, int x, int y, int z, boolean value) {
+        int index = (x >> 4) * depth + (z >> 4);
+        long[] bits = sets[index][y >> 4];
+        if (bits == null) {
+            if (!value) {
+                return;
+            }
+            bits = new long[64];
+            sets[index][y >> 4] = bits;
+        }
+        int bit = ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+        if (value) {
+            bits[bit >>> 6] |= 1L << bit;
+        } else {
+            bits[bit >>> 6] &= ~(1L << bit);
+        }
+    }
+    
+    private int[] collectPlayerSeeds() {
+        UUID[] players = plan.getPlayers().toArray(new UUID[0]);
+        int[] seeds = new int[players.length * 3];
+        int count = 0;
+        for (UUID playerId : players) {
+            Player player = Bukkit.getPlayer(playerId);
+            if (player == null || !player.getWorld().equals(plan.getWorld())) {
+                continue;
+            }
+            Location location = player.getLocation();
+            seeds[count++] = location.getBlockX() - minX;
+            seeds[count++] = location.getBlockY() - minY;
+            seeds[count++] = location.getBlockZ() - minZ;
+        }
+        return Arrays.copyOf(seeds, count);
+    }
+    
+    public boolean isApplied() {
+        return applied;
+    }
+    
+    // Number of lava writes saved at world height y
+    public int getPrunedAt(int y) {
+        int ry = y - minY;
+        if (ry < 0 || ry >= sizeY) {
+            return 0;
+        }
+        synchronized (plan.lock) {
+            return prunedPerLayer[ry];
+        }
+    }
+    
+    public long getPrunedTotal() {
+        synchronized (plan.lock) {
+            return prunedTotal;
+        }
+    }
+    
+    public long getRestoredTotal() {
+        synchronized (plan.lock) {
+            return restoredTotal;
+        }
+    }
+    
+    public long getSearchNanos() {
+        return searchNanos;
+    }
+    
+    private record Change(int x, int y, int z, boolean needsLava) {
+    }
+    
+    // Positions are packed as (y * sizeX + x) * sizeZ + z, which does not fit an int on large arenas.
+    // Every search and every opened block gets its own stack, so concurrent calls never share one.
+    private static final class PositionStack {
+        
+        private long[] values;
+        private int size;
+        
+        PositionStack(int capacity) {
+            values = new long[capacity];
+        }
+        
+        void push(long packed) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = packed;
+        }
+        
+        long pop() {
+            return values[--size];
+        }
+        
+        boolean isEmpty() {
+            return size == 0;
+        }
+    }
+}
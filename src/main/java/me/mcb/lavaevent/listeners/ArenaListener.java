@@ -0,0 +1,128 @@
+package me.mcb.lavaevent.listeners;
+
+import me.mcb.lavaevent.MCBLavaEventPlugin;
+import me.mcb.lavaevent.arena.ChangeJournal;
+import me.mcb.lavaevent.game.GameManager;
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockBurnEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockFadeEvent;
+import org.bukkit.event.block.BlockFormEvent;
+import org.bukkit.event.block.BlockFromToEvent;
+import org.bukkit.event.block.BlockIgniteEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.block.BlockSpreadEvent;
+import org.bukkit.event.block.LeavesDecayEvent;
+import org.bukkit.event.entity.EntityChangeBlockEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.player.PlayerBucketEmptyEvent;
+import org.bukkit.event.player.PlayerBucketFillEvent;
+
+import java.util.List;
+
+public class ArenaListener implements Listener {
+    
+    private final MCBLavaEventPlugin plugin;
+    
+    public ArenaListener(MCBLavaEventPlugin plugin) {
+        this.plugin = plugin;
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockPlace(BlockPlaceEvent event) {
+        blockChanged(event.getBlock(), event.getBlockReplacedState().getBlockData(), event.getBlock().getType());
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBreak(BlockBreakEvent event) {
+        blockChanged(event.getBlock(), event.getBlock().getBlockData(), Material.AIR);
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBurn(BlockBurnEvent event) {
+        blockChanged(event.getBlock(), event.getBlock().getBlockData(), Material.AIR);
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onLeavesDecay(LeavesDecayEvent event) {
+        blockChanged(event.getBlock(), event.getBlock().getBlockData(), Material.AIR);
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockFade(BlockFadeEvent event) {
+        blockChanged(event.getBlock(), event.getBlock().getBlockData(), event.getNewState().getType());
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockForm(BlockFormEvent event) {
+        blockChanged(event.getBlock(), event.getBlock().getBlockData(), event.getNewState().getType());
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockSpread(BlockSpreadEvent event) {
+        blockChanged(event.getBlock(), event.getBlock().getBlockData(), event.getNewState().getType());
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockIgnite(BlockIgniteEvent event) {
+        blockChanged(event.getBlock(), event.getBlock().getBlockData(), Material.FIRE);
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockFromTo(BlockFromToEvent event) {
+        blockChanged(event.getToBlock(), event.getToBlock().getBlockData(), event.getBlock().getType());
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityChangeBlock(EntityChangeBlockEvent event) {
+        blockChanged(event.getBlock(), event.getBlock().getBlockData(), event.getTo());
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBucketEmpty(PlayerBucketEmptyEvent event) {
+        blockChanged(event.getBlock(), event.getBlock().getBlockData(), event.getBucket() == Material.LAVA_BUCKET ? Material.LAVA : Material.WATER);
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBucketFill(PlayerBucketFillEvent event) {
+        blockChanged(event.getBlock(), event.getBlock().getBlockData(), Material.AIR);
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockExplode(BlockExplodeEvent event) {
+        blocksRemoved(event.blockList());
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityExplode(EntityExplodeEvent event) {
+        blocksRemoved(event.blockList());
+    }
+    
+    private void blocksRemoved(List<Block> blocks) {
+        for (Block block : blocks) {
+            blockChanged(block, block.getBlockData(), Material.AIR);
+        }
+    }
+    
+    private void blockChanged(Block block, BlockData original, Material newType) {
+        // Keeps the lava fill plan and cached section states in step with what players build and dig
+        GameManager arena = plugin.getArenaManager().getArenaAt(block.getWorld(), block.getX(), block.getZ());
+        if (arena == null) {
+            return;
+        }
+        
+        ChangeJournal journal = arena.getChangeJournal();
+        if (journal != null) {
+            journal.record(block.getX(), block.getY(), block.getZ(), original);
+        }
+        
+        boolean replaceable = arena.getLavaRules().isReplaceable(newType);
+        arena.getLavaWriter().blockChanged(block.getX(), block.getY(), block.getZ(), replaceable);
+    }
+}
\ No newline at end of file
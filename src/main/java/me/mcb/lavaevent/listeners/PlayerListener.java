@@ -1,20 +1,32 @@
 package me.mcb.lavaevent.listeners;
 
 import me.mcb.lavaevent.MCBLavaEventPlugin;
+import me.mcb.lavaevent.game.GameManager;
 import org.bukkit.*;
+import org.bukkit.damage.DamageType;
 import org.bukkit.entity.Firework;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.entity.EntityDamageByEntityEvent;
 import org.bukkit.event.entity.PlayerDeathEvent;
 import org.bukkit.event.player.PlayerBucketEmptyEvent;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerKickEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
 import org.bukkit.inventory.meta.FireworkMeta;
 
+import java.util.Set;
+
 public class PlayerListener implements Listener {
     
+    // Damage that counts as the lava getting the player
+    private static final Set<DamageType> LAVA_DAMAGE = Set.of(DamageType.LAVA, DamageType.IN_FIRE, DamageType.ON_FIRE);
+    
     private final MCBLavaEventPlugin plugin;
     
     public PlayerListener(MCBLavaEventPlugin plugin) {
@@ -24,17 +36,46 @@ public class PlayerListener implements Listener {
     @EventHandler
     public void onPlayerJoin(PlayerJoinEvent event) {
         Player player = event.getPlayer();
+        plugin.getArenaManager().updateStaff(player);
         
-        // Add player to event if one is active
-        plugin.getGameManager().addPlayerToEvent(player);
+        // Add player to the event running where they joined, if any
+        for (GameManager arena : plugin.getArenaManager().getArenas()) {
+            if (arena.isEventActive()) {
+                arena.addPlayerToEvent(player);
+            }
+        }
     }
     
     @EventHandler
     public void onPlayerQuit(PlayerQuitEvent event) {
         Player player = event.getPlayer();
+        plugin.getArenaManager().removeStaff(player);
         
-        // Player will be automatically removed from alive players list
-        // during the next player check cycle in GameManager
+        // An alive player has the reconnect grace to come back before they are out
+        GameManager arena = plugin.getArenaManager().getArenaOf(player.getUniqueId());
+        if (arena != null) {
+            arena.handleQuit(player);
+        }
+    }
+    
+    // Fires before the quit, so a kicked player is out before the reconnect grace could start. A kick another
+    // plugin cancels never happened, so only the outcome counts.
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerKick(PlayerKickEvent event) {
+        Player player = event.getPlayer();
+        GameManager arena = plugin.getArenaManager().getArenaOf(player.getUniqueId());
+        if (arena != null && arena.isPlayerAlive(player.getUniqueId())) {
+            arena.handleKick(player);
+        }
+    }
+    
+    @EventHandler
+    public void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+        Player player = event.getPlayer();
+        GameManager arena = plugin.getArenaManager().getArenaOf(player.getUniqueId());
+        if (arena != null && arena.isPlayerAlive(player.getUniqueId())) {
+            arena.handleWorldChange(player);
+        }
     }
     
     @EventHandler
@@ -42,67 +83,56 @@ public class PlayerListener implements Listener {
         Player player = event.getEntity();
         
         // Only handle deaths during active events
-        if (!plugin.getGameManager().isEventActive()) {
+        GameManager arena = plugin.getArenaManager().getArenaOf(player.getUniqueId());
+        if (arena == null || !arena.isEventActive()) {
             return;
         }
         
         // Only handle deaths of alive players
-        if (!plugin.getGameManager().isPlayerAlive(player.getUniqueId())) {
+        if (!arena.isPlayerAlive(player.getUniqueId())) {
             return;
         }
         
-        // Check if death was caused by lava
-        if (isLavaRelatedDeath(event)) {
-            // Play death effects
-            playDeathEffects(player);
-            
-            // Eliminate the player
-            plugin.getGameManager().eliminatePlayer(player);
+        // Decided by what killed them, so it works with any death message language
+        if (isLavaRelatedDeath(event, arena)) {
+            arena.eliminateByLava(player);
             
-            // Cancel the death (prevent item dropping and respawn)
+            // Cancel the death (prevent item dropping and respawn) and keep them around as a spectator
             event.setCancelled(true);
-            
-            // Set player to full health and put in spectator mode
             player.setHealth(player.getMaxHealth());
-            player.setGameMode(GameMode.SPECTATOR);
         }
     }
     
-    private boolean isLavaRelatedDeath(PlayerDeathEvent event) {
-        // Check death message or damage cause
-        String deathMessage = event.getDeathMessage();
-        if (deathMessage != null) {
-            return deathMessage.contains("lava") || deathMessage.contains("tried to swim in lava");
+    private boolean isLavaRelatedDeath(PlayerDeathEvent event, GameManager arena) {
+        if (LAVA_DAMAGE.contains(event.getDamageSource().getDamageType())) {
+            return true;
         }
         
-        // Check if player was in lava when they died
-        Player player = event.getEntity();
-        Location loc = player.getLocation();
-        return loc.getBlock().getType() == Material.LAVA || 
-               player.getFireTicks() > 0 ||
-               loc.getY() <= plugin.getGameManager().getCurrentLavaLevel();
+        // Anything else that got them under the lava surface, such as drowning or suffocating in a sealed cave
+        return arena.isSubmerged(event.getEntity().getLocation());
     }
     
-    private void playDeathEffects(Player player) {
-        Location loc = player.getLocation();
-        World world = loc.getWorld();
-        
-        // Lightning effect
-        if (plugin.getConfigManager().getConfig().getBoolean("effects.death-lightning", true)) {
-            world.strikeLightningEffect(loc);
+    // The height index and the player grid only need block positions, so moves within a block return after
+    // the comparison. Runs on the player's own thread, which is the only one that may read their position.
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerMove(PlayerMoveEvent event) {
+        updatePosition(event);
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerTeleport(PlayerTeleportEvent event) {
+        updatePosition(event);
+    }
+    
+    private void updatePosition(PlayerMoveEvent event) {
+        Location to = event.getTo();
+        Location from = event.getFrom();
+        if (to.getBlockX() == from.getBlockX() && to.getBlockY() == from.getBlockY() && to.getBlockZ() == from.getBlockZ()) {
+            return;
         }
-        
-        // Sound effect for all players
-        String soundName = plugin.getConfigManager().getConfig().getString("effects.death-sound", "ENTITY_LIGHTNING_BOLT_THUNDER");
-        try {
-            Sound sound = Sound.valueOf(soundName);
-            for (Player onlinePlayer : Bukkit.getOnlinePlayers()) {
-                if (onlinePlayer.getWorld().equals(world)) {
-                    onlinePlayer.playSound(onlinePlayer.getLocation(), sound, 1.0f, 1.0f);
-                }
-            }
-        } catch (IllegalArgumentException e) {
-            plugin.getLogger().warning("Invalid death sound: " + soundName);
+        GameManager arena = plugin.getArenaManager().getArenaOf(event.getPlayer().getUniqueId());
+        if (arena != null) {
+            arena.updatePosition(event.getPlayer(), to);
         }
     }
     
@@ -113,11 +143,12 @@ public class PlayerListener implements Listener {
             return;
         }
         
-        if (!plugin.getGameManager().isEventActive()) {
+        GameManager arena = plugin.getArenaManager().getArenaOf(event.getEntity().getUniqueId());
+        if (arena == null || !arena.isEventActive()) {
             return;
         }
         
-        if (plugin.getGameManager().isGracePeriodActive()) {
+        if (arena.isGracePeriodActive()) {
             event.setCancelled(true);
         }
     }
@@ -127,7 +158,8 @@ public class PlayerListener implements Listener {
         Player player = event.getPlayer();
         
         // Only track water bucket usage during active events
-        if (!plugin.getGameManager().isEventActive()) {
+        GameManager arena = plugin.getArenaManager().getArenaOf(player.getUniqueId());
+        if (arena == null || !arena.isEventActive()) {
             return;
         }
         
@@ -137,7 +169,7 @@ public class PlayerListener implements Listener {
         }
         
         // Check if player can use water bucket
-        if (!plugin.getGameManager().canUseWaterBucket(player.getUniqueId())) {
+        if (!arena.canUseWaterBucket(player.getUniqueId())) {
             event.setCancelled(true);
             
             // Send appropriate message
@@ -150,6 +182,6 @@ public class PlayerListener implements Listener {
         }
         
         // Record the water bucket usage
-        plugin.getGameManager().recordWaterBucketUse(player.getUniqueId());
+        arena.recordWaterBucketUse(player.getUniqueId());
     }
 } 
\ No newline at end of file
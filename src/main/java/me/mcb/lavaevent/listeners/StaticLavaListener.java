@@ -0,0 +1,59 @@
+package me.mcb.lavaevent.listeners;
+
+import me.mcb.lavaevent.MCBLavaEventPlugin;
+import me.mcb.lavaevent.game.GameManager;
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockFromToEvent;
+import org.bukkit.event.block.BlockIgniteEvent;
+import org.bukkit.event.block.BlockPhysicsEvent;
+import org.bukkit.event.block.BlockSpreadEvent;
+
+public class StaticLavaListener implements Listener {
+    
+    private final MCBLavaEventPlugin plugin;
+    
+    public StaticLavaListener(MCBLavaEventPlugin plugin) {
+        this.plugin = plugin;
+    }
+    
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onBlockFromTo(BlockFromToEvent event) {
+        // Water keeps flowing so water buckets still work as players expect
+        if (event.getBlock().getType() == Material.LAVA && isStaticArenaBlock(event.getBlock())) {
+            event.setCancelled(true);
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onBlockPhysics(BlockPhysicsEvent event) {
+        // Called very often, so check the cheap changed type before anything else
+        if (event.getChangedType() == Material.LAVA && isStaticArenaBlock(event.getBlock())) {
+            event.setCancelled(true);
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onBlockIgnite(BlockIgniteEvent event) {
+        if (event.getCause() == BlockIgniteEvent.IgniteCause.LAVA && isStaticArenaBlock(event.getBlock())) {
+            event.setCancelled(true);
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onBlockSpread(BlockSpreadEvent event) {
+        if (event.getSource().getType() == Material.FIRE && isStaticArenaBlock(event.getBlock())) {
+            event.setCancelled(true);
+        }
+    }
+    
+    // The match can end on another thread after the lookup, and a stopped arena may take new rules on reload,
+    // so its lava rules only count while it is still running
+    private boolean isStaticArenaBlock(Block block) {
+        GameManager arena = plugin.getArenaManager().getArenaAt(block.getWorld(), block.getX(), block.getZ());
+        return arena != null && arena.isEventActive() && arena.getLavaRules().isStaticLava();
+    }
+}
@@ -1,13 +1,24 @@
 package me.mcb.lavaevent.placeholders;
 
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
 import me.clip.placeholderapi.expansion.PlaceholderExpansion;
 import me.mcb.lavaevent.MCBLavaEventPlugin;
+import me.mcb.lavaevent.game.ArenaManager;
 import org.bukkit.OfflinePlayer;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 public class LavaEventPlaceholders extends PlaceholderExpansion {
     
+    // Placeholders come from config files, so there are few of them; anything past this is parsed on every request
+    private static final int MAX_REQUESTS = 1024;
+    
     private final MCBLavaEventPlugin plugin;
+    private final Map<String, Request> requests = new ConcurrentHashMap<>();
+    private volatile PlaceholderSnapshot snapshot = PlaceholderSnapshot.EMPTY;
+    private ScheduledTask refreshTask;
     
     public LavaEventPlaceholders(MCBLavaEventPlugin plugin) {
         this.plugin = plugin;
@@ -33,60 +44,56 @@ public class LavaEventPlaceholders extends PlaceholderExpansion {
         return true;
     }
     
+    // Captures the first snapshot and keeps it current, once per tick on the global region
+    public void start() {
+        refresh();
+        refreshTask = plugin.getTaskScheduler().runTimer(task -> refresh(), 1L, 1L);
+    }
+    
+    public void stop() {
+        if (refreshTask != null) {
+            refreshTask.cancel();
+            refreshTask = null;
+        }
+    }
+    
+    private void refresh() {
+        ArenaManager arenas = plugin.getArenaManager();
+        PlaceholderSnapshot next = PlaceholderSnapshot.capture(arenas.getArenas(), arenas.getDefaultArena(), snapshot);
+        // Parsed requests name arenas by id, so they are parsed again once the arenas change
+        if (!next.getArenaIds().equals(snapshot.getArenaIds())) {
+            requests.clear();
+        }
+        snapshot = next;
+    }
+    
+    // %lavaevent_<value>% reads the player's arena (or the default one), %lavaevent_<arena>_<value>% a named arena.
+    // Called for every scoreboard line of every player, so it only looks values up in the current snapshot.
     @Override
     public String onRequest(OfflinePlayer player, @NotNull String params) {
-        switch (params.toLowerCase()) {
-            case "active":
-                return plugin.getGameManager().isEventActive() ? "true" : "false";
-                
-            case "grace_period":
-                return plugin.getGameManager().isGracePeriodActive() ? "true" : "false";
-                
-            case "lava_level":
-                return String.valueOf((int) plugin.getGameManager().getCurrentLavaLevel());
-                
-            case "alive_count":
-                return String.valueOf(plugin.getGameManager().getAlivePlayerCount());
-                
-            case "is_alive":
-                if (player == null) return "false";
-                return plugin.getGameManager().isPlayerAlive(player.getUniqueId()) ? "true" : "false";
-                
-            case "is_spectator":
-                if (player == null) return "false";
-                return plugin.getGameManager().isPlayerSpectator(player.getUniqueId()) ? "true" : "false";
-                
-            case "world":
-                return plugin.getGameManager().getEventWorld() != null ? 
-                    plugin.getGameManager().getEventWorld().getName() : "none";
-                
-            case "status":
-                if (!plugin.getGameManager().isEventActive()) {
-                    return "inactive";
-                } else if (plugin.getGameManager().isGracePeriodActive()) {
-                    return "grace_period";
-                } else {
-                    return "active";
-                }
-                
-            case "waterbucket_used":
-                if (player == null) return "0";
-                return String.valueOf(plugin.getGameManager().getWaterBucketUsage(player.getUniqueId()));
-                
-            case "waterbucket_remaining":
-                if (player == null) return "0";
-                int remaining = plugin.getGameManager().getRemainingWaterBuckets(player.getUniqueId());
-                return remaining == -1 ? "unlimited" : String.valueOf(remaining);
-                
-            case "waterbucket_max":
-                int maxUses = plugin.getConfigManager().getMaxWaterBucketsPerPlayer();
-                return maxUses == -1 ? "unlimited" : String.valueOf(maxUses);
-                
-            case "waterbucket_disabled":
-                return plugin.getConfigManager().areWaterBucketsDisabled() ? "true" : "false";
-                
-            default:
-                return null;
+        Request request = requests.get(params);
+        if (request == null) {
+            request = parse(params);
+            if (requests.size() < MAX_REQUESTS) {
+                requests.put(params, request);
+            }
         }
+        return snapshot.get(request.arenaId(), request.key(), player != null ? player.getUniqueId() : null);
+    }
+    
+    // An arena id only counts as a prefix when a known key follows it, so an arena named lava or alive does not
+    // take %lavaevent_lava_level% or %lavaevent_alive_count% away from the player's arena
+    private Request parse(String params) {
+        String value = params.toLowerCase();
+        for (String id : snapshot.getArenaIds()) {
+            if (value.startsWith(id + "_") && PlaceholderSnapshot.KEYS.contains(value.substring(id.length() + 1))) {
+                return new Request(id, value.substring(id.length() + 1));
+            }
+        }
+        return new Request(null, value);
+    }
+    
+    // A placeholder split into its arena id, null for the player's arena, and the value asked for
+    private record Request(String arenaId, String key) {
     }
-} 
\ No newline at end of file
+}
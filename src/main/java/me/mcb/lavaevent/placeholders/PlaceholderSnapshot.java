@@ -0,0 +1,181 @@
+package me.mcb.lavaevent.placeholders;
+
+import me.mcb.lavaevent.config.ConfigSnapshot;
+import me.mcb.lavaevent.game.GameManager;
+import me.mcb.lavaevent.game.GamePhase;
+import me.mcb.lavaevent.game.GameState;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+// Every placeholder value of every arena as ready-made strings, captured once per tick from each arena's GameState.
+// Answering a placeholder is then one lookup for the player and one for the arena, without building any strings.
+// Arenas and players whose values did not change since the previous capture are carried over as they are.
+final class PlaceholderSnapshot {
+    
+    static final PlaceholderSnapshot EMPTY = new PlaceholderSnapshot(Map.of(), null, Map.of());
+    
+    private static final String NONE = "-";
+    
+    // Every key there is a value for, arena and player keys alike
+    static final Set<String> KEYS = Set.of("arena", "active", "grace_period", "phase", "lava_level", "alive_count",
+        "players_total", "world", "status", "waterbucket_max", "waterbucket_disabled", "time_elapsed",
+        "next_layer_eta", "border_size", "is_alive", "is_spectator", "waterbucket_used", "waterbucket_remaining",
+        "elimination_rank");
+    
+    private final Map<String, ArenaValues> arenas;
+    private final ArenaValues defaultArena;
+    private final Map<UUID, PlayerValues> players;
+    
+    private PlaceholderSnapshot(Map<String, ArenaValues> arenas, ArenaValues defaultArena, Map<UUID, PlayerValues> players) {
+        this.arenas = arenas;
+        this.defaultArena = defaultArena;
+        this.players = players;
+    }
+    
+    static PlaceholderSnapshot capture(Collection<GameManager> managers, GameManager defaultManager, PlaceholderSnapshot previous) {
+        Map<String, ArenaValues> arenas = new HashMap<>();
+        Map<UUID, PlayerValues> players = new HashMap<>();
+        for (GameManager manager : managers) {
+            ArenaValues arena = ArenaValues.capture(manager, previous.arenas.get(manager.getId()));
+            arenas.put(manager.getId(), arena);
+            
+            for (UUID playerId : manager.getAlivePlayers()) {
+                players.put(playerId, PlayerValues.capture(manager, playerId, previous.players.get(playerId)));
+            }
+            for (UUID playerId : manager.getSpectators()) {
+                players.put(playerId, PlayerValues.capture(manager, playerId, previous.players.get(playerId)));
+            }
+        }
+        
+        // Players of a finished match keep their rank until they join another one
+        for (GameManager manager : managers) {
+            for (UUID playerId : manager.getRankedPlayers()) {
+                if (!players.containsKey(playerId)) {
+                    players.put(playerId, PlayerValues.capture(manager, playerId, previous.players.get(playerId)));
+                }
+            }
+        }
+        
+        ArenaValues defaultArena = defaultManager != null ? arenas.get(defaultManager.getId()) : null;
+        return new PlaceholderSnapshot(arenas, defaultArena, players);
+    }
+    
+    Set<String> getArenaIds() {
+        return arenas.keySet();
+    }
+    
+    // The value of key for the named arena, or for the player's arena (or the default one) when arenaId is null
+    String get(String arenaId, String key, UUID playerId) {
+        PlayerValues player = playerId != null ? players.get(playerId) : null;
+        ArenaValues arena;
+        if (arenaId != null) {
+            arena = arenas.get(arenaId);
+            if (player != null && !player.arenaId().equals(arenaId)) {
+                player = null;
+            }
+        } else {
+            arena = player != null ? arenas.get(player.arenaId()) : defaultArena;
+        }
+        if (arena == null) {
+            return null;
+        }
+        
+        String value = arena.values().get(key);
+        if (value != null) {
+            return value;
+        }
+        if (player == null) {
+            player = playerId != null ? arena.outsider() : PlayerValues.NO_PLAYER;
+        }
+        return player.get(key);
+    }
+    
+    // What one arena looks like this tick; values is rebuilt only when state changes
+    private record ArenaValues(ArenaState state, Map<String, String> values, PlayerValues outsider) {
+        
+        static ArenaValues capture(GameManager manager, ArenaValues previous) {
+            GameState game = manager.getState();
+            ConfigSnapshot.WaterBuckets buckets = manager.getConfig().waterBuckets();
+            ArenaState state = new ArenaState(game.arenaId(), game.active(), game.isGracePeriod(), game.phase(),
+                (int) game.lavaLevel(), game.alive(), game.participants(),
+                game.worldName() != null ? game.worldName() : "none", buckets.maxUsesPerPlayer(), buckets.disabled(),
+                game.elapsedSeconds(), game.nextLayerSeconds(), game.borderSize());
+            if (previous != null && previous.state.equals(state)) {
+                return previous;
+            }
+            
+            Map<String, String> values = new HashMap<>();
+            values.put("arena", state.id());
+            values.put("active", String.valueOf(state.active()));
+            values.put("grace_period", String.valueOf(state.grace()));
+            values.put("phase", state.phase().getKey());
+            values.put("lava_level", String.valueOf(state.lavaLevel()));
+            values.put("alive_count", String.valueOf(state.alive()));
+            values.put("players_total", String.valueOf(state.total()));
+            values.put("world", state.world());
+            values.put("status", !state.active() ? "inactive" : state.grace() ? "grace_period" : "active");
+            values.put("waterbucket_max", state.maxBuckets() == -1 ? "unlimited" : String.valueOf(state.maxBuckets()));
+            values.put("waterbucket_disabled", String.valueOf(state.bucketsDisabled()));
+            values.put("time_elapsed", String.format("%d:%02d", state.elapsed() / 60, state.elapsed() % 60));
+            values.put("next_layer_eta", state.nextLayer() < 0 ? NONE : String.valueOf(state.nextLayer()));
+            values.put("border_size", String.valueOf(state.borderSize()));
+            
+            // Someone who is not in this arena has used none of its buckets
+            PlayerValues outsider = new PlayerValues(state.id(), false, false, 0, state.maxBuckets(), 0);
+            return new ArenaValues(state, Map.copyOf(values), outsider);
+        }
+    }
+    
+    private record ArenaState(String id, boolean active, boolean grace, GamePhase phase, int lavaLevel, int alive,
+                              int total, String world, int maxBuckets, boolean bucketsDisabled, int elapsed,
+                              int nextLayer, int borderSize) {
+    }
+    
+    // What one player looks like in their arena this tick
+    private record PlayerValues(String arenaId, boolean alive, boolean spectator, int used, int remaining, int rank,
+                                String usedText, String remainingText, String rankText) {
+        
+        // Asked for without a player
+        static final PlayerValues NO_PLAYER = new PlayerValues("", false, false, 0, 0, 0);
+        
+        PlayerValues(String arenaId, boolean alive, boolean spectator, int used, int remaining, int rank) {
+            this(arenaId, alive, spectator, used, remaining, rank, String.valueOf(used),
+                remaining == -1 ? "unlimited" : String.valueOf(remaining), rank > 0 ? String.valueOf(rank) : NONE);
+        }
+        
+        static PlayerValues capture(GameManager manager, UUID playerId, PlayerValues previous) {
+            boolean alive = manager.isPlayerAlive(playerId);
+            boolean spectator = manager.isPlayerSpectator(playerId);
+            int used = manager.getWaterBucketUsage(playerId);
+            int remaining = manager.getRemainingWaterBuckets(playerId);
+            int rank = manager.getEliminationRank(playerId);
+            if (previous != null && previous.arenaId.equals(manager.getId()) && previous.alive == alive
+                && previous.spectator == spectator && previous.used == used && previous.remaining == remaining
+                && previous.rank == rank) {
+                return previous;
+            }
+            return new PlayerValues(manager.getId(), alive, spectator, used, remaining, rank);
+        }
+        
+        String get(String key) {
+            switch (key) {
+                case "is_alive":
+                    return alive ? "true" : "false";
+                case "is_spectator":
+                    return spectator ? "true" : "false";
+                case "waterbucket_used":
+                    return usedText;
+                case "waterbucket_remaining":
+                    return remainingText;
+                case "elimination_rank":
+                    return rankText;
+                default:
+                    return null;
+            }
+        }
+    }
+}
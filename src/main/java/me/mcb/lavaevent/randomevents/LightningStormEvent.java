@@ -0,0 +1,30 @@
+package me.mcb.lavaevent.randomevents;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+
+// Lightning strikes random spots inside the border for game.random-events.events.lightning-storm.duration seconds
+public class LightningStormEvent implements RandomEvent {
+    
+    @Override
+    public String getKey() {
+        return "lightning-storm";
+    }
+    
+    @Override
+    public Running start(RandomEventContext context) {
+        context.broadcast("random-events.lightning-storm.start");
+        context.broadcast("random-events.lightning-storm.warning");
+        
+        World world = context.getWorld();
+        int[] timeLeft = {context.getRandomEvents().lightningStormDuration()};
+        return () -> {
+            for (int i = 0; i < 2; i++) {
+                double x = context.randomX();
+                double z = context.randomZ();
+                context.spawnAt(x, z, highest -> world.strikeLightning(new Location(world, x, highest, z)));
+            }
+            return --timeLeft[0] > 0;
+        };
+    }
+}
@@ -0,0 +1,50 @@
+package me.mcb.lavaevent.randomevents;
+
+import me.mcb.lavaevent.game.PlayerGrid;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.Monster;
+import org.bukkit.entity.Player;
+
+// Hostile mobs appear at random spots inside the border, each going after the player nearest to it
+public class MobSpawnEvent implements RandomEvent {
+    
+    private static final EntityType[] HOSTILE_MOBS = {
+        EntityType.ZOMBIE, EntityType.SKELETON, EntityType.CREEPER, 
+        EntityType.SPIDER, EntityType.ENDERMAN, EntityType.WITCH
+    };
+    
+    // Nearest-player results; events start on the global region only
+    private final int[] nearest = new int[1];
+    
+    @Override
+    public String getKey() {
+        return "mob-spawn";
+    }
+    
+    @Override
+    public Running start(RandomEventContext context) {
+        context.broadcast("random-events.mob-spawn.start");
+        
+        World world = context.getWorld();
+        PlayerGrid grid = context.getArena().getPlayerGrid();
+        for (int i = 0; i < context.getRandomEvents().mobSpawnCount(); i++) {
+            double x = context.randomX();
+            double z = context.randomZ();
+            EntityType mobType = HOSTILE_MOBS[context.getRandom().nextInt(HOSTILE_MOBS.length)];
+            Player target = grid.nearest(x, z, Double.POSITIVE_INFINITY, nearest) > 0 ? grid.getPlayer(nearest[0]) : null;
+            
+            context.spawnAt(x, z, highest -> {
+                Entity mob = world.spawnEntity(new Location(world, x, highest + 1, z), mobType);
+                // A mob can only be given a target its own region owns
+                if (mob instanceof Monster && target != null && Bukkit.isOwnedByCurrentRegion(target)) {
+                    ((Monster) mob).setTarget(target);
+                }
+            });
+        }
+        return null;
+    }
+}
@@ -0,0 +1,24 @@
+package me.mcb.lavaevent.randomevents;
+
+// Something that can happen to the players of a match. The built-in events and those other plugins add are kept
+// in the RandomEventRegistry; each match picks one by the weights under game.random-events.events and drives it.
+public interface RandomEvent {
+    
+    // The name of this event's section under game.random-events.events
+    String getKey();
+    
+    // Starts the event on the global region. Returns what it still has to do, or null when it is over already.
+    Running start(RandomEventContext context);
+    
+    // The lasting part of an event. The match ticks it right after the start and then once per second, together
+    // with every other running event, so events never start timers of their own.
+    interface Running {
+        
+        // Returns false once the event is over
+        boolean tick();
+        
+        // The match ended while the event was running
+        default void cancel() {
+        }
+    }
+}
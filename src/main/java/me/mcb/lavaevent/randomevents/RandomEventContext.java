@@ -0,0 +1,80 @@
+package me.mcb.lavaevent.randomevents;
+
+import me.mcb.lavaevent.MCBLavaEventPlugin;
+import me.mcb.lavaevent.config.ConfigSnapshot;
+import me.mcb.lavaevent.game.GameManager;
+import org.bukkit.World;
+import org.bukkit.WorldBorder;
+
+import java.util.Random;
+import java.util.function.Consumer;
+
+// What a random event gets to work with: the match it runs in and the settings it was started with
+public final class RandomEventContext {
+    
+    private final MCBLavaEventPlugin plugin;
+    private final GameManager arena;
+    private final World world;
+    private final Random random;
+    private final ConfigSnapshot.RandomEvents randomEvents;
+    private final ConfigSnapshot.EventSettings settings;
+    
+    public RandomEventContext(MCBLavaEventPlugin plugin, GameManager arena, World world, Random random,
+                              ConfigSnapshot.RandomEvents randomEvents, ConfigSnapshot.EventSettings settings) {
+        this.plugin = plugin;
+        this.arena = arena;
+        this.world = world;
+        this.random = random;
+        this.randomEvents = randomEvents;
+        this.settings = settings;
+    }
+    
+    public MCBLavaEventPlugin getPlugin() {
+        return plugin;
+    }
+    
+    public GameManager getArena() {
+        return arena;
+    }
+    
+    public World getWorld() {
+        return world;
+    }
+    
+    public Random getRandom() {
+        return random;
+    }
+    
+    // game.random-events as a whole, for the settings of the built-in events
+    public ConfigSnapshot.RandomEvents getRandomEvents() {
+        return randomEvents;
+    }
+    
+    // This event's own section
+    public ConfigSnapshot.EventSettings getSettings() {
+        return settings;
+    }
+    
+    // Sends a messages.yml message to everyone who hears the arena
+    public void broadcast(String path) {
+        plugin.getMessageUtils().broadcastRaw(arena.getAudience(), path);
+    }
+    
+    // A random X coordinate inside the border as it is now
+    public double randomX() {
+        WorldBorder border = arena.getBorder();
+        return border.getCenter().getX() + (random.nextDouble() - 0.5) * border.getSize();
+    }
+    
+    public double randomZ() {
+        WorldBorder border = arena.getBorder();
+        return border.getCenter().getZ() + (random.nextDouble() - 0.5) * border.getSize();
+    }
+    
+    // Positions are picked on the global region; the height lookup and the spawn run on the region owning the spot
+    public void spawnAt(double x, double z, Consumer<Integer> spawn) {
+        int blockX = (int) Math.floor(x);
+        int blockZ = (int) Math.floor(z);
+        plugin.getTaskScheduler().runAt(world, blockX >> 4, blockZ >> 4, () -> spawn.accept(world.getHighestBlockYAt(blockX, blockZ)));
+    }
+}
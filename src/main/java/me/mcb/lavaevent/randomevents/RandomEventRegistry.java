@@ -0,0 +1,30 @@
+package me.mcb.lavaevent.randomevents;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Every random event a match can pick from. Other plugins add theirs through
+// MCBLavaEventPlugin.getInstance().getRandomEventRegistry(); matches see a change at their next pick.
+public class RandomEventRegistry {
+    
+    private final Map<String, RandomEvent> events = new ConcurrentHashMap<>();
+    
+    // Returns false when another event already has this key
+    public boolean register(RandomEvent event) {
+        return events.putIfAbsent(event.getKey().toLowerCase(), event) == null;
+    }
+    
+    public void unregister(String key) {
+        events.remove(key.toLowerCase());
+    }
+    
+    public RandomEvent get(String key) {
+        return events.get(key.toLowerCase());
+    }
+    
+    public Collection<RandomEvent> getEvents() {
+        return Collections.unmodifiableCollection(events.values());
+    }
+}
@@ -0,0 +1,34 @@
+package me.mcb.lavaevent.randomevents;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.TNTPrimed;
+
+// Primed TNT falls on random spots inside the border for game.random-events.events.tnt-rain.duration seconds
+public class TntRainEvent implements RandomEvent {
+    
+    @Override
+    public String getKey() {
+        return "tnt-rain";
+    }
+    
+    @Override
+    public Running start(RandomEventContext context) {
+        context.broadcast("random-events.tnt-rain.start");
+        context.broadcast("random-events.tnt-rain.warning");
+        
+        World world = context.getWorld();
+        int[] timeLeft = {context.getRandomEvents().tntRainDuration()};
+        return () -> {
+            for (int i = 0; i < 3; i++) {
+                double x = context.randomX();
+                double z = context.randomZ();
+                context.spawnAt(x, z, highest -> {
+                    TNTPrimed tnt = world.spawn(new Location(world, x, highest + 50, z), TNTPrimed.class);
+                    tnt.setFuseTicks(60); // 3 seconds fuse
+                });
+            }
+            return --timeLeft[0] > 0;
+        };
+    }
+}
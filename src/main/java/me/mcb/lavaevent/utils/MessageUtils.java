@@ -1,23 +1,46 @@
 package me.mcb.lavaevent.utils;
 
 import me.mcb.lavaevent.MCBLavaEventPlugin;
+import me.mcb.lavaevent.config.MessageBundles;
+import net.kyori.adventure.audience.Audience;
+import net.kyori.adventure.identity.Identity;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.minimessage.MiniMessage;
-import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
+import net.kyori.adventure.text.minimessage.tag.resolver.Placeholder;
+import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver;
 import net.kyori.adventure.title.Title;
 import org.bukkit.Bukkit;
 import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.entity.Player;
 
 import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class MessageUtils {
     
+    // {name} placeholders in messages.yml become <name> tags that the send's placeholders fill in
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{([a-z0-9_-]+)}");
+    
+    private static final Title.Times TITLE_TIMES = Title.Times.times(
+        Duration.ofMillis(500),  // fade in
+        Duration.ofSeconds(3),   // stay
+        Duration.ofMillis(500)   // fade out
+    );
+    
     private final MCBLavaEventPlugin plugin;
     private final MiniMessage miniMessage;
     
+    // Templates are kept per message key and locale bundle, and dropped when a reload replaces the bundles
+    private volatile TemplateCache cache;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    
     public MessageUtils(MCBLavaEventPlugin plugin) {
         this.plugin = plugin;
         this.miniMessage = MiniMessage.miniMessage();
@@ -36,105 +59,187 @@ public class MessageUtils {
     }
     
     public Component getComponent(String path) {
-        return miniMessage.deserialize(getMessage(path));
+        return render(MessageBundles.DEFAULT, path, false, Map.of());
     }
     
     public Component getComponent(String path, Map<String, String> placeholders) {
-        return miniMessage.deserialize(getMessage(path, placeholders));
+        return render(MessageBundles.DEFAULT, path, false, placeholders);
+    }
+    
+    private Component render(String bundle, String path, boolean prefixed, Map<String, String> placeholders) {
+        Template template = template(bundle, path, prefixed);
+        if (template.fixed != null) {
+            hits.increment();
+            return template.fixed;
+        }
+        
+        // The same values as last time (one broadcast to several arenas, the same reply to several players)
+        Rendered last = template.last;
+        if (last != null && last.placeholders().equals(placeholders)) {
+            hits.increment();
+            return last.component();
+        }
+        
+        misses.increment();
+        TagResolver.Builder resolver = TagResolver.builder();
+        for (Map.Entry<String, String> entry : placeholders.entrySet()) {
+            // Values are inserted as plain text, so a player name cannot bring its own formatting
+            resolver.resolver(Placeholder.unparsed(entry.getKey(), entry.getValue()));
+        }
+        Component component = miniMessage.deserialize(template.source, resolver.build());
+        template.last = new Rendered(Map.copyOf(placeholders), component);
+        return component;
+    }
+    
+    private Template template(String bundle, String path, boolean prefixed) {
+        MessageBundles bundles = plugin.getConfigManager().getMessageBundles();
+        TemplateCache current = cache;
+        if (current == null || current.bundles() != bundles) {
+            current = new TemplateCache(bundles, new ConcurrentHashMap<>());
+            cache = current;
+        }
+        
+        // A bundle still being read is stood in for by messages.yml, without caching it under the bundle
+        FileConfiguration messages = bundles.get(bundle);
+        if (messages == null) {
+            bundle = MessageBundles.DEFAULT;
+            messages = bundles.getDefault();
+        }
+        
+        TemplateKey key = new TemplateKey(bundle, path, prefixed);
+        Template template = current.templates().get(key);
+        if (template == null) {
+            template = compile((prefixed ? getMessage(messages, "prefix") : "") + getMessage(messages, path));
+            current.templates().putIfAbsent(key, template);
+        }
+        return template;
+    }
+    
+    private static String getMessage(FileConfiguration messages, String path) {
+        return messages.getString(path, "Message not found: " + path);
+    }
+    
+    // Messages without placeholders are parsed right away and never again
+    private Template compile(String message) {
+        Matcher matcher = PLACEHOLDER.matcher(message);
+        if (!matcher.find()) {
+            misses.increment();
+            return new Template(message, miniMessage.deserialize(message));
+        }
+        return new Template(matcher.replaceAll("<$1>"), null);
+    }
+    
+    // Renders once for each bundle in use among the audience's players, not once per player.
+    // Without locale bundles the audience gets one component and Adventure forwards it.
+    private void deliver(Audience audience, String path, boolean prefixed, Map<String, String> placeholders) {
+        MessageBundles bundles = plugin.getConfigManager().getMessageBundles();
+        if (!bundles.hasBundles()) {
+            audience.sendMessage(render(MessageBundles.DEFAULT, path, prefixed, placeholders));
+            return;
+        }
+        
+        Map<String, Component> rendered = new HashMap<>();
+        audience.forEachAudience(member -> {
+            String bundle = bundles.resolve(member.get(Identity.LOCALE).orElse(null));
+            member.sendMessage(rendered.computeIfAbsent(bundle, key -> render(key, path, prefixed, placeholders)));
+        });
+    }
+    
+    private void deliverTitle(Audience audience, String titlePath, String subtitlePath, Map<String, String> placeholders) {
+        MessageBundles bundles = plugin.getConfigManager().getMessageBundles();
+        if (!bundles.hasBundles()) {
+            audience.showTitle(title(MessageBundles.DEFAULT, titlePath, subtitlePath, placeholders));
+            return;
+        }
+        
+        Map<String, Title> rendered = new HashMap<>();
+        audience.forEachAudience(member -> {
+            String bundle = bundles.resolve(member.get(Identity.LOCALE).orElse(null));
+            member.showTitle(rendered.computeIfAbsent(bundle, key -> title(key, titlePath, subtitlePath, placeholders)));
+        });
+    }
+    
+    private Title title(String bundle, String titlePath, String subtitlePath, Map<String, String> placeholders) {
+        return Title.title(render(bundle, titlePath, false, placeholders), render(bundle, subtitlePath, false, placeholders),
+            TITLE_TIMES);
     }
     
     public void sendMessage(CommandSender sender, String path) {
-        String prefix = getMessage("prefix");
-        String message = getMessage(path);
-        Component component = miniMessage.deserialize(prefix + message);
-        sender.sendMessage(component);
+        deliver(sender, path, true, Map.of());
     }
     
     public void sendMessage(CommandSender sender, String path, Map<String, String> placeholders) {
-        String prefix = getMessage("prefix");
-        String message = getMessage(path, placeholders);
-        Component component = miniMessage.deserialize(prefix + message);
-        sender.sendMessage(component);
+        deliver(sender, path, true, placeholders);
     }
     
     public void sendRawMessage(CommandSender sender, String path) {
-        Component component = getComponent(path);
-        sender.sendMessage(component);
+        deliver(sender, path, false, Map.of());
     }
     
     public void sendRawMessage(CommandSender sender, String path, Map<String, String> placeholders) {
-        Component component = getComponent(path, placeholders);
-        sender.sendMessage(component);
+        deliver(sender, path, false, placeholders);
     }
     
     public void broadcast(String path) {
-        String prefix = getMessage("prefix");
-        String message = getMessage(path);
-        Component component = miniMessage.deserialize(prefix + message);
-        Bukkit.broadcast(component);
+        deliver(Bukkit.getServer(), path, true, Map.of());
     }
     
     public void broadcast(String path, Map<String, String> placeholders) {
-        String prefix = getMessage("prefix");
-        String message = getMessage(path, placeholders);
-        Component component = miniMessage.deserialize(prefix + message);
-        Bukkit.broadcast(component);
+        deliver(Bukkit.getServer(), path, true, placeholders);
     }
     
     public void broadcastRaw(String path) {
-        Component component = getComponent(path);
-        Bukkit.broadcast(component);
+        deliver(Bukkit.getServer(), path, false, Map.of());
     }
     
     public void broadcastRaw(String path, Map<String, String> placeholders) {
-        Component component = getComponent(path, placeholders);
-        Bukkit.broadcast(component);
+        deliver(Bukkit.getServer(), path, false, placeholders);
+    }
+    
+    // Arena announcements go to the arena's audience instead of the whole server
+    public void broadcast(Audience audience, String path) {
+        deliver(audience, path, true, Map.of());
+    }
+    
+    public void broadcast(Audience audience, String path, Map<String, String> placeholders) {
+        deliver(audience, path, true, placeholders);
+    }
+    
+    public void broadcastRaw(Audience audience, String path) {
+        deliver(audience, path, false, Map.of());
+    }
+    
+    public void broadcastRaw(Audience audience, String path, Map<String, String> placeholders) {
+        deliver(audience, path, false, placeholders);
+    }
+    
+    public void broadcastTitle(Audience audience, String titlePath, String subtitlePath, Map<String, String> placeholders) {
+        deliverTitle(audience, titlePath, subtitlePath, placeholders);
     }
     
     public void sendTitle(Player player, String titlePath, String subtitlePath) {
-        Component titleComponent = getComponent(titlePath);
-        Component subtitleComponent = getComponent(subtitlePath);
-        
-        Title title = Title.title(
-            titleComponent,
-            subtitleComponent,
-            Title.Times.times(
-                Duration.ofMillis(500),  // fade in
-                Duration.ofSeconds(3),   // stay
-                Duration.ofMillis(500)   // fade out
-            )
-        );
-        
-        player.showTitle(title);
+        deliverTitle(player, titlePath, subtitlePath, Map.of());
     }
     
     public void sendTitle(Player player, String titlePath, String subtitlePath, Map<String, String> placeholders) {
-        Component titleComponent = getComponent(titlePath, placeholders);
-        Component subtitleComponent = getComponent(subtitlePath, placeholders);
-        
-        Title title = Title.title(
-            titleComponent,
-            subtitleComponent,
-            Title.Times.times(
-                Duration.ofMillis(500),  // fade in
-                Duration.ofSeconds(3),   // stay
-                Duration.ofMillis(500)   // fade out
-            )
-        );
-        
-        player.showTitle(title);
+        deliverTitle(player, titlePath, subtitlePath, placeholders);
     }
     
     public void broadcastTitle(String titlePath, String subtitlePath) {
-        for (Player player : Bukkit.getOnlinePlayers()) {
-            sendTitle(player, titlePath, subtitlePath);
-        }
+        deliverTitle(Bukkit.getServer(), titlePath, subtitlePath, Map.of());
     }
     
     public void broadcastTitle(String titlePath, String subtitlePath, Map<String, String> placeholders) {
-        for (Player player : Bukkit.getOnlinePlayers()) {
-            sendTitle(player, titlePath, subtitlePath, placeholders);
-        }
+        deliverTitle(Bukkit.getServer(), titlePath, subtitlePath, placeholders);
+    }
+    
+    // Sends that reused an already parsed component, and sends that had to parse
+    public long getTemplateHits() {
+        return hits.sum();
+    }
+    
+    public long getTemplateMisses() {
+        return misses.sum();
     }
     
     // Convenience method for creating placeholder maps
@@ -147,4 +252,25 @@ public class MessageUtils {
         }
         return placeholders;
     }
-} 
\ No newline at end of file
+    
+    // A message compiled to MiniMessage; fixed is set when it has no placeholders
+    private static final class Template {
+        private final String source;
+        private final Component fixed;
+        private volatile Rendered last;
+        
+        private Template(String source, Component fixed) {
+            this.source = source;
+            this.fixed = fixed;
+        }
+    }
+    
+    private record Rendered(Map<String, String> placeholders, Component component) {
+    }
+    
+    private record TemplateKey(String bundle, String path, boolean prefixed) {
+    }
+    
+    private record TemplateCache(MessageBundles bundles, Map<TemplateKey, Template> templates) {
+    }
+}
\ No newline at end of file
@@ -0,0 +1,77 @@
+package me.mcb.lavaevent.utils;
+
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+
+import java.util.function.Consumer;
+
+// Schedules work on the thread that owns it. Paper runs all of these on the main thread;
+// Folia runs global work on the global region, block work on the region owning the chunk and
+// player work on the region the player is in.
+public class TaskScheduler {
+    
+    private static final boolean FOLIA = classExists("io.papermc.paper.threadedregions.RegionizedServer");
+    
+    private final Plugin plugin;
+    
+    public TaskScheduler(Plugin plugin) {
+        this.plugin = plugin;
+    }
+    
+    public static boolean isFolia() {
+        return FOLIA;
+    }
+    
+    private static boolean classExists(String name) {
+        try {
+            Class.forName(name);
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+    
+    // Countdowns, timers and anything else that belongs to the match rather than to a place
+    public void run(Runnable task) {
+        Bukkit.getGlobalRegionScheduler().execute(plugin, task);
+    }
+    
+    public ScheduledTask runLater(Consumer<ScheduledTask> task, long delayTicks) {
+        return Bukkit.getGlobalRegionScheduler().runDelayed(plugin, task, Math.max(1L, delayTicks));
+    }
+    
+    public ScheduledTask runTimer(Consumer<ScheduledTask> task, long delayTicks, long periodTicks) {
+        return Bukkit.getGlobalRegionScheduler().runAtFixedRate(plugin, task, Math.max(1L, delayTicks), periodTicks);
+    }
+    
+    // Block and entity-spawning work at a chunk. Runs right away when this thread already owns the chunk,
+    // which on Paper is always the case on the main thread.
+    public void runAt(World world, int chunkX, int chunkZ, Runnable task) {
+        if (!plugin.isEnabled() || Bukkit.isOwnedByCurrentRegion(world, chunkX, chunkZ)) {
+            task.run();
+            return;
+        }
+        Bukkit.getRegionScheduler().execute(plugin, world, chunkX, chunkZ, task);
+    }
+    
+    public void runAt(Location location, Runnable task) {
+        runAt(location.getWorld(), location.getBlockX() >> 4, location.getBlockZ() >> 4, task);
+    }
+    
+    public ScheduledTask runAtLater(World world, int chunkX, int chunkZ, Consumer<ScheduledTask> task, long delayTicks) {
+        return Bukkit.getRegionScheduler().runDelayed(plugin, world, chunkX, chunkZ, task, Math.max(1L, delayTicks));
+    }
+    
+    // Work on a player or other entity; skipped when the entity is removed before it runs
+    public void runFor(Entity entity, Runnable task) {
+        if (!plugin.isEnabled() || Bukkit.isOwnedByCurrentRegion(entity)) {
+            task.run();
+            return;
+        }
+        entity.getScheduler().execute(plugin, task, null, 1L);
+    }
+}
\ No newline at end of file
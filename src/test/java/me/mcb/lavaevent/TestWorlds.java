@@ -0,0 +1,74 @@
+package me.mcb.lavaevent;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+
+import java.lang.reflect.Field;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Mocked worlds for tests that run the lava writer and the arena restorer without a server.
+// Everything below the ground level is stone and everything from it up is air.
+public final class TestWorlds {
+    
+    private static final Map<Material, BlockData> BLOCK_DATA = new EnumMap<>(Material.class);
+    
+    private TestWorlds() {
+    }
+    
+    // Bukkit.setServer also asks the server for build information, which a mock cannot provide
+    public static synchronized void installServer() {
+        if (Bukkit.getServer() != null) {
+            return;
+        }
+        Server server = mock(Server.class);
+        when(server.getLogger()).thenReturn(Logger.getLogger("TestServer"));
+        when(server.createBlockData(any(Material.class))).thenAnswer(invocation -> blockData(invocation.getArgument(0)));
+        try {
+            Field field = Bukkit.class.getDeclaredField("server");
+            field.setAccessible(true);
+            field.set(null, server);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not install the test server", e);
+        }
+    }
+    
+    // One shared instance per material, like the server's own block states
+    public static synchronized BlockData blockData(Material material) {
+        return BLOCK_DATA.computeIfAbsent(material, type -> {
+            BlockData data = mock(BlockData.class);
+            when(data.getMaterial()).thenReturn(type);
+            return data;
+        });
+    }
+    
+    public static World world(int groundY) {
+        World world = mock(World.class);
+        when(world.getMinHeight()).thenReturn(-64);
+        when(world.getMaxHeight()).thenReturn(320);
+        when(world.getType(anyInt(), anyInt(), anyInt()))
+            .thenAnswer(invocation -> (int) invocation.getArgument(1) < groundY ? Material.STONE : Material.AIR);
+        when(world.getBlockData(anyInt(), anyInt(), anyInt()))
+            .thenAnswer(invocation -> blockData((int) invocation.getArgument(1) < groundY ? Material.STONE : Material.AIR));
+        
+        // Sections are reported empty, so the writer always examines them
+        ChunkSnapshot snapshot = mock(ChunkSnapshot.class);
+        when(snapshot.isSectionEmpty(anyInt())).thenReturn(true);
+        Chunk chunk = mock(Chunk.class);
+        when(chunk.getChunkSnapshot(anyBoolean(), anyBoolean(), anyBoolean())).thenReturn(snapshot);
+        when(world.getChunkAt(anyInt(), anyInt())).thenReturn(chunk);
+        return world;
+    }
+}
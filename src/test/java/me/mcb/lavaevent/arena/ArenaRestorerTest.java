@@ -0,0 +1,131 @@
+package me.mcb.lavaevent.arena;
+
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import me.mcb.lavaevent.MCBLavaEventPlugin;
+import me.mcb.lavaevent.TestWorlds;
+import me.mcb.lavaevent.config.ConfigManager;
+import me.mcb.lavaevent.lava.LavaLayerWriter;
+import me.mcb.lavaevent.lava.LavaRules;
+import me.mcb.lavaevent.lava.MemoryBlockWriteBackend;
+import me.mcb.lavaevent.utils.TaskScheduler;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ArenaRestorerTest {
+    
+    private static final int GROUND = 64;
+    
+    private World world;
+    private MCBLavaEventPlugin plugin;
+    private MemoryBlockWriteBackend backend;
+    private final AtomicReference<Consumer<ScheduledTask>> timer = new AtomicReference<>();
+    
+    @BeforeAll
+    static void installServer() {
+        TestWorlds.installServer();
+    }
+    
+    @BeforeEach
+    void setUp() {
+        world = TestWorlds.world(GROUND);
+        backend = new MemoryBlockWriteBackend();
+        
+        // The restore timer is driven by hand, one call per tick
+        TaskScheduler scheduler = mock(TaskScheduler.class);
+        when(scheduler.runTimer(any(), anyLong(), anyLong())).thenAnswer(invocation -> {
+            timer.set(invocation.getArgument(0));
+            return mock(ScheduledTask.class);
+        });
+        ConfigManager configManager = mock(ConfigManager.class);
+        when(configManager.getRestoreTickBudgetMs()).thenReturn(1000.0);
+        
+        plugin = mock(MCBLavaEventPlugin.class);
+        when(plugin.getTaskScheduler()).thenReturn(scheduler);
+        when(plugin.getConfigManager()).thenReturn(configManager);
+        when(plugin.getLogger()).thenReturn(Logger.getLogger("ArenaRestorerTest"));
+    }
+    
+    private void runToCompletion(ArenaRestorer restorer) {
+        restorer.start(null);
+        Consumer<ScheduledTask> tick = timer.get();
+        assertNotNull(tick);
+        for (int i = 0; i < 100 && restorer.isRunning(); i++) {
+            tick.accept(mock(ScheduledTask.class));
+        }
+        assertFalse(restorer.isRunning());
+    }
+    
+    @Test
+    void restoresFirstRecordedState() {
+        ChangeJournal journal = new ChangeJournal(world);
+        journal.record(1, 70, 1, TestWorlds.blockData(Material.AIR));
+        journal.record(1, 70, 1, TestWorlds.blockData(Material.LAVA));
+        journal.record(40, 71, -3, TestWorlds.blockData(Material.WATER));
+        
+        ArenaRestorer restorer = new ArenaRestorer(plugin, journal, backend);
+        runToCompletion(restorer);
+        
+        assertEquals(2, restorer.getRestored());
+        assertSame(TestWorlds.blockData(Material.AIR), backend.getBlock(1, 70, 1));
+        assertSame(TestWorlds.blockData(Material.WATER), backend.getBlock(40, 71, -3));
+        assertTrue(journal.isEmpty());
+    }
+    
+    @Test
+    void undoesLavaWrittenByTheWriter() {
+        ChangeJournal journal = new ChangeJournal(world);
+        LavaLayerWriter writer = new LavaLayerWriter();
+        writer.setRules(new LavaRules(EnumSet.of(Material.AIR), false));
+        writer.setBackend(backend);
+        writer.setJournal(journal);
+        writer.writeLayer(world, -8, -8, 23, 23, GROUND);
+        writer.writeLayer(world, -8, -8, 23, 23, GROUND + 1);
+        assertSame(TestWorlds.blockData(Material.LAVA), backend.getBlock(0, GROUND, 0));
+        
+        ArenaRestorer restorer = new ArenaRestorer(plugin, journal, backend);
+        runToCompletion(restorer);
+        
+        assertEquals(2 * 32 * 32, restorer.getRestored());
+        for (int x = -8; x <= 23; x++) {
+            for (int z = -8; z <= 23; z++) {
+                assertSame(TestWorlds.blockData(Material.AIR), backend.getBlock(x, GROUND, z));
+                assertSame(TestWorlds.blockData(Material.AIR), backend.getBlock(x, GROUND + 1, z));
+            }
+        }
+    }
+    
+    @Test
+    void restoreNowFinishesWithoutWaitingForTicks() {
+        ChangeJournal journal = new ChangeJournal(world);
+        journal.record(1, 70, 1, TestWorlds.blockData(Material.AIR));
+        journal.record(-20, 90, 33, TestWorlds.blockData(Material.STONE));
+        
+        ArenaRestorer restorer = new ArenaRestorer(plugin, journal, backend);
+        restorer.start(null);
+        restorer.restoreNow();
+        
+        assertFalse(restorer.isRunning());
+        assertEquals(2, restorer.getRestored());
+        assertSame(TestWorlds.blockData(Material.AIR), backend.getBlock(1, 70, 1));
+        assertSame(TestWorlds.blockData(Material.STONE), backend.getBlock(-20, 90, 33));
+        assertTrue(journal.isEmpty());
+    }
+}
@@ -0,0 +1,78 @@
+package me.mcb.lavaevent.lava;
+
+import me.mcb.lavaevent.TestWorlds;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.data.BlockData;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BukkitBlockWriteBackendTest {
+    
+    private static final int GROUND = 64;
+    
+    private World world;
+    private Block block;
+    private BlockData lava;
+    private final BukkitBlockWriteBackend backend = new BukkitBlockWriteBackend();
+    
+    @BeforeAll
+    static void installServer() {
+        TestWorlds.installServer();
+    }
+    
+    @BeforeEach
+    void setUp() {
+        world = TestWorlds.world(GROUND);
+        block = mock(Block.class);
+        when(world.getBlockAt(anyInt(), anyInt(), anyInt())).thenReturn(block);
+        lava = TestWorlds.blockData(Material.LAVA);
+    }
+    
+    @Test
+    void writesWithoutPhysicsWhenAskedTo() {
+        long[] positions = {BlockWriteBackend.pack(1, GROUND, 2), BlockWriteBackend.pack(-5, GROUND + 3, 7)};
+        
+        assertEquals(2, backend.write(world, positions, positions.length, lava, false));
+        
+        verify(block, times(2)).setBlockData(lava, false);
+        verify(world, never()).setBlockData(anyInt(), anyInt(), anyInt(), any(BlockData.class));
+    }
+    
+    @Test
+    void fillsLayerWithoutPhysicsWhenAskedTo() {
+        LavaRules rules = new LavaRules(EnumSet.of(Material.AIR), true);
+        
+        assertEquals(16, backend.fillLayer(world, 0, 0, 3, 3, GROUND, lava, rules, false));
+        assertEquals(0, backend.fillLayer(world, 0, 0, 3, 3, GROUND - 1, lava, rules, false));
+        
+        verify(block, times(16)).setBlockData(lava, false);
+        verify(block, never()).setBlockData(any(BlockData.class), eq(true));
+        verify(world, never()).setBlockData(anyInt(), anyInt(), anyInt(), any(BlockData.class));
+    }
+    
+    @Test
+    void writesWithPhysicsThroughTheWorld() {
+        long[] positions = {BlockWriteBackend.pack(1, GROUND, 2)};
+        
+        backend.write(world, positions, positions.length, lava, true);
+        
+        verify(world).setBlockData(1, GROUND, 2, lava);
+        verify(block, never()).setBlockData(any(BlockData.class), anyBoolean());
+    }
+}
@@ -0,0 +1,75 @@
+package me.mcb.lavaevent.lava;
+
+import me.mcb.lavaevent.TestWorlds;
+import me.mcb.lavaevent.arena.ChangeJournal;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class LavaLayerWriterTest {
+    
+    private static final int GROUND = 64;
+    
+    private World world;
+    private LavaLayerWriter writer;
+    private MemoryBlockWriteBackend backend;
+    
+    @BeforeAll
+    static void installServer() {
+        TestWorlds.installServer();
+    }
+    
+    @BeforeEach
+    void setUp() {
+        world = TestWorlds.world(GROUND);
+        backend = new MemoryBlockWriteBackend();
+        writer = new LavaLayerWriter();
+        writer.setRules(new LavaRules(EnumSet.of(Material.AIR), false));
+        writer.setBackend(backend);
+    }
+    
+    @Test
+    void fillsOnlyReplaceableBlocks() {
+        writer.writeLayer(world, 0, 0, 31, 31, GROUND);
+        writer.writeLayer(world, 0, 0, 31, 31, GROUND - 1);
+        
+        assertEquals(32 * 32, backend.size());
+        assertEquals(32 * 32, writer.getTotalWritten());
+        assertSame(TestWorlds.blockData(Material.LAVA), backend.getBlock(7, GROUND, 20));
+        assertNull(backend.getBlock(7, GROUND - 1, 20));
+    }
+    
+    @Test
+    void skipsLayerAlreadyWritten() {
+        writer.writeChunk(world, 0, 0, 0, 0, 15, 15, GROUND);
+        
+        assertEquals(LavaLayerWriter.SKIPPED, writer.writeChunk(world, 0, 0, 0, 0, 15, 15, GROUND));
+        assertEquals(16 * 16, writer.getTotalWritten());
+    }
+    
+    @Test
+    void journalsOnlyReplacedBlocks() {
+        ChangeJournal journal = new ChangeJournal(world);
+        writer.setJournal(journal);
+        
+        writer.writeLayer(world, 0, 0, 31, 31, GROUND);
+        writer.writeLayer(world, 0, 0, 31, 31, GROUND - 1);
+        
+        assertEquals(32 * 32, journal.getRecorded());
+        assertEquals(32 * 32, backend.size());
+        // Solid blocks are decided on their type alone, without reading their block data
+        verify(world, never()).getBlockData(anyInt(), eq(GROUND - 1), anyInt());
+    }
+}